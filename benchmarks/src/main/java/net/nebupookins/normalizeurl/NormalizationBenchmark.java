@@ -0,0 +1,91 @@
+package net.nebupookins.normalizeurl;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link UrlNormalizer#apply(String)} as a whole, as well as each of the individual stages of
+ * {@link SemanticPreservingNormalizations}, over each {@link UrlCorpus}. Every invocation handles a single url, so the
+ * scores are urls per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark {
+    @Param
+    public UrlCorpus corpus;
+
+    private final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+    private String[] urls;
+    private ParsedUrl[] parsedUrls;
+    private String[] paths;
+    private int next;
+
+    @Setup
+    public void setUp() throws MalformedURLException {
+        urls = corpus.urls();
+        parsedUrls = new ParsedUrl[urls.length];
+        paths = new String[urls.length];
+        for (int i = 0; i < urls.length; i++) {
+            parsedUrls[i] = new ParsedUrl(urls[i]);
+            paths[i] = parsedUrls[i].path;
+        }
+    }
+
+    private int next() {
+        final int current = next;
+        next = current + 1 == urls.length ? 0 : current + 1;
+        return current;
+    }
+
+    @Benchmark
+    public String apply() {
+        return normalizer.apply(urls[next()]);
+    }
+
+    @Benchmark
+    public String applyStaged() {
+        return SemanticPreservingNormalizations.applyStaged(urls[next()]);
+    }
+
+    @Benchmark
+    public ParsedUrl parse() throws MalformedURLException {
+        return new ParsedUrl(urls[next()]);
+    }
+
+    @Benchmark
+    public String convertPercentEncodedTripletsToUpperCase() {
+        return SemanticPreservingNormalizations.convertPercentEncodedTripletsToUpperCase(urls[next()]);
+    }
+
+    @Benchmark
+    public String decodePercentEncodedTripletsOfUnreservedCharacters() {
+        return SemanticPreservingNormalizations.decodePercentEncodedTripletsOfUnreservedCharacters(urls[next()]);
+    }
+
+    @Benchmark
+    public ParsedUrl convertSchemeAndHostToLowercase() {
+        return SemanticPreservingNormalizations.convertSchemeAndHostToLowercase(parsedUrls[next()]);
+    }
+
+    @Benchmark
+    public String normalizePathDotSegments() {
+        return SemanticPreservingNormalizations.normalizePathDotSegments(paths[next()]);
+    }
+
+    @Benchmark
+    public ParsedUrl normalizeEmptyPathAndDefaultPort() {
+        return SemanticPreservingNormalizations.normalizeDefaultPort(
+                SemanticPreservingNormalizations.normalizeEmptyPath(parsedUrls[next()]));
+    }
+
+    @Benchmark
+    public String parsedUrlToString() {
+        return parsedUrls[next()].toString();
+    }
+}
@@ -0,0 +1,119 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Random;
+
+/**
+ * Deterministic sets of urls representative of what a crawler sees, used as benchmark inputs. Each corpus is generated
+ * from a fixed seed so that runs are comparable with each other.
+ */
+public enum UrlCorpus {
+    /**
+     * Short urls, mostly homepages, e.g. "HTTP://www.Example.COM:80/".
+     */
+    SHORT {
+        @Override
+        String generate(Random random) {
+            final StringBuilder url = new StringBuilder();
+            url.append(random.nextBoolean() ? "http://" : "HTTP://");
+            url.append(random.nextBoolean() ? "www." : "WWW.");
+            appendWord(random, url, 4 + random.nextInt(8));
+            url.append(random.nextBoolean() ? ".com" : ".ORG");
+            if (random.nextInt(4) == 0) {
+                url.append(":80");
+            }
+            if (random.nextBoolean()) {
+                url.append('/');
+            }
+            return url.toString();
+        }
+    },
+    /**
+     * Long urls with tracking parameters and heavy percent-encoding, in both cases, including encoded unreserved
+     * characters, e.g. "https://shop.example.com/p/%7euser?utm_source=news%2dletter&amp;redirect=https%3a%2f%2f...".
+     */
+    TRACKING {
+        @Override
+        String generate(Random random) {
+            final StringBuilder url = new StringBuilder();
+            url.append("https://Shop.Example.com/p/");
+            appendEncoded(random, url, 20 + random.nextInt(20));
+            url.append('?');
+            final int parameters = 8 + random.nextInt(12);
+            for (int i = 0; i < parameters; i++) {
+                if (i > 0) {
+                    url.append('&');
+                }
+                url.append(TRACKING_PARAMETERS[random.nextInt(TRACKING_PARAMETERS.length)]);
+                url.append('=');
+                appendEncoded(random, url, 10 + random.nextInt(40));
+            }
+            url.append('#');
+            appendWord(random, url, 6);
+            return url.toString();
+        }
+    },
+    /**
+     * Urls with deep paths full of "." and ".." segments, like those produced by crawler traps, e.g.
+     * "http://example.com/a/b/../c/./d/../../e".
+     */
+    DOT_SEGMENTS {
+        @Override
+        String generate(Random random) {
+            final StringBuilder url = new StringBuilder("http://example.com");
+            final int segments = 20 + random.nextInt(60);
+            for (int i = 0; i < segments; i++) {
+                url.append('/');
+                switch (random.nextInt(4)) {
+                    case 0:
+                        url.append('.');
+                        break;
+                    case 1:
+                        url.append("..");
+                        break;
+                    default:
+                        appendWord(random, url, 1 + random.nextInt(6));
+                        break;
+                }
+            }
+            return url.toString();
+        }
+    };
+
+    private static final int SIZE = 1024;
+    private static final String[] TRACKING_PARAMETERS = {
+            "utm_source", "utm_medium", "utm_campaign", "utm_term", "utm_content", "fbclid", "gclid", "ref", "id",
+            "redirect", "q", "session"
+    };
+    private static final String WORD_CHARACTERS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
+    abstract String generate(Random random);
+
+    /**
+     * @return a fresh copy of the urls in this corpus; always the same urls, in the same order.
+     */
+    public String[] urls() {
+        final Random random = new Random(ordinal());
+        final String[] urls = new String[SIZE];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = generate(random);
+        }
+        return urls;
+    }
+
+    private static void appendWord(Random random, StringBuilder url, int length) {
+        for (int i = 0; i < length; i++) {
+            url.append(WORD_CHARACTERS.charAt(random.nextInt(WORD_CHARACTERS.length())));
+        }
+    }
+
+    private static void appendEncoded(Random random, StringBuilder url, int length) {
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(3) == 0) {
+                final String triplet = new UrlOctet((char) random.nextInt(0x80)).asEncoded();
+                url.append(random.nextBoolean() ? triplet : triplet.toLowerCase());
+            } else {
+                url.append(WORD_CHARACTERS.charAt(random.nextInt(WORD_CHARACTERS.length())));
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Normalizes urls on an executor rather than on the calling thread, so that callers such as event loops never block
+ * on normalization. Each url normalized is a {@link CompletableFuture}.
+ *
+ * <p>Urls are not handed to the executor one at a time: they're queued, and a bounded number of tasks drain the
+ * queue, each normalizing up to a batch of urls before giving its thread back to the executor. Under load, that
+ * amortizes the cost of scheduling a task over a whole batch, and keeps each worker's scratch buffers in use for the
+ * whole batch.</p>
+ *
+ * <p>Normalization is CPU bound, so the executor should have about as many threads as there are cores, as the
+ * default, the common fork-join pool, does. An executor of virtual threads works too, but gains nothing, and gives
+ * each task fresh scratch buffers.</p>
+ *
+ * <p>Instances are safe to share between any number of threads.</p>
+ */
+public final class AsyncUrlNormalizer {
+    private static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final UrlNormalizer normalizer;
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxDrainers;
+    private final ConcurrentLinkedQueue<Request<?>> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drainers = new AtomicInteger();
+
+    /**
+     * A url waiting to be normalized, and the future to complete once it has been.
+     */
+    private abstract static class Request<T> extends CompletableFuture<T> {
+        final String url;
+
+        Request(String url) {
+            this.url = url;
+        }
+
+        abstract void run(UrlNormalizer normalizer);
+    }
+
+    private static final class ApplyRequest extends Request<String> {
+        ApplyRequest(String url) {
+            super(url);
+        }
+
+        @Override
+        void run(UrlNormalizer normalizer) {
+            final NormalizationResult result = normalizer.tryApply(url);
+            if (result.isSuccess()) {
+                complete(result.get());
+            } else {
+                completeExceptionally(result.toException());
+            }
+        }
+    }
+
+    private static final class TryApplyRequest extends Request<NormalizationResult> {
+        TryApplyRequest(String url) {
+            super(url);
+        }
+
+        @Override
+        void run(UrlNormalizer normalizer) {
+            complete(normalizer.tryApply(url));
+        }
+    }
+
+    /**
+     * Same as {@link #AsyncUrlNormalizer(UrlNormalizer, Executor, int)}, normalizing on the common fork-join pool, in
+     * batches of up to 64 urls.
+     */
+    public AsyncUrlNormalizer(UrlNormalizer normalizer) {
+        this(normalizer, ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param normalizer the normalizer to apply; must be safe to call from several threads at once.
+     * @param executor   the executor to normalize on.
+     * @param batchSize  the most urls a task normalizes before giving its thread back to the executor; must be
+     *                   positive.
+     */
+    public AsyncUrlNormalizer(UrlNormalizer normalizer, Executor executor, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive, but was " + batchSize);
+        }
+        this.normalizer = normalizer;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxDrainers = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+    }
+
+    UrlNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return a future of the normalized form of the url, which completes exceptionally, with what
+     * {@link UrlNormalizer#apply(String)} would have thrown, if the url can't be normalized.
+     */
+    public CompletableFuture<String> applyAsync(String url) {
+        return submit(new ApplyRequest(url));
+    }
+
+    /**
+     * @return a future of the normalized form of the url or the reason it can't be normalized, as
+     * {@link UrlNormalizer#tryApply(String)} reports them. The future only completes exceptionally if the executor
+     * rejects the work.
+     */
+    public CompletableFuture<NormalizationResult> tryApplyAsync(String url) {
+        return submit(new TryApplyRequest(url));
+    }
+
+    /**
+     * Normalizes the whole batch with {@link UrlNormalizer#applyAllInParallel(String[], ForkJoinPool)} if the
+     * executor is a fork-join pool, or as a single task otherwise.
+     *
+     * @return a future of the batch's result; a url that can't be normalized does not fail the future.
+     */
+    public CompletableFuture<BatchResult> applyAllAsync(String[] urls) {
+        if (executor instanceof ForkJoinPool) {
+            final ForkJoinPool pool = (ForkJoinPool) executor;
+            return CompletableFuture.supplyAsync(() -> normalizer.applyAllInParallel(urls, pool), pool);
+        }
+        return CompletableFuture.supplyAsync(() -> normalizer.applyAll(urls), executor);
+    }
+
+    /**
+     * Same as {@link #applyAllAsync(String[])}, for a list of urls.
+     */
+    public CompletableFuture<BatchResult> applyAllAsync(List<String> urls) {
+        return applyAllAsync(urls.toArray(new String[0]));
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        queue.add(request);
+        startDrainerIfNeeded();
+        return request;
+    }
+
+    /**
+     * Starts another task draining the queue, unless as many as there are worker threads are already running. The
+     * ones already running will get to the queued urls soon enough.
+     */
+    private void startDrainerIfNeeded() {
+        while (true) {
+            final int running = drainers.get();
+            if (running >= maxDrainers) {
+                return;
+            }
+            if (drainers.compareAndSet(running, running + 1)) {
+                execute();
+                return;
+            }
+        }
+    }
+
+    private void execute() {
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            if (drainers.decrementAndGet() == 0) {
+                //Nothing else will ever get to the queued urls.
+                Request<?> request;
+                while ((request = queue.poll()) != null) {
+                    request.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Normalizes up to a batch of queued urls. If there are more, the task is resubmitted rather than carrying on, so
+     * that other work on the executor gets its turn.
+     */
+    private void drain() {
+        Request<?> request;
+        for (int i = 0; i < batchSize && (request = queue.poll()) != null; i++) {
+            try {
+                request.run(normalizer);
+            } catch (RuntimeException e) {
+                request.completeExceptionally(e);
+            }
+        }
+        if (!queue.isEmpty()) {
+            execute();
+            return;
+        }
+        drainers.decrementAndGet();
+        //A url may have been queued after the queue was last seen empty, but before this task stopped counting.
+        if (!queue.isEmpty()) {
+            startDrainerIfNeeded();
+        }
+    }
+}
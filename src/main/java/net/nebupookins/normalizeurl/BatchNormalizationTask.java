@@ -0,0 +1,76 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Normalizes a range of a batch of urls, splitting the range in half until it is small enough to be worth handling on a
+ * single fork-join worker. Since each worker runs its leaves one after the other, normalizers that keep per-thread
+ * scratch buffers (as {@link SemanticPreservingNormalizations} does) reuse the same buffers for the whole leaf.
+ */
+final class BatchNormalizationTask extends RecursiveAction {
+    private static final int LEAF_SIZE = 256;
+
+    private final UrlNormalizer normalizer;
+    private final String[] urls;
+    private final String[] normalized;
+    private final NormalizationResult[] failures;
+    private final int from;
+    private final int to;
+
+    private BatchNormalizationTask(
+            UrlNormalizer normalizer,
+            String[] urls,
+            String[] normalized,
+            NormalizationResult[] failures,
+            int from,
+            int to) {
+        this.normalizer = normalizer;
+        this.urls = urls;
+        this.normalized = normalized;
+        this.failures = failures;
+        this.from = from;
+        this.to = to;
+    }
+
+    static BatchResult normalizeSequentially(UrlNormalizer normalizer, String[] urls) {
+        final BatchNormalizationTask task = new BatchNormalizationTask(
+                normalizer, urls, new String[urls.length], new NormalizationResult[urls.length], 0, urls.length);
+        task.normalizeRange();
+        return task.toResult();
+    }
+
+    static BatchResult normalizeInParallel(UrlNormalizer normalizer, String[] urls, ForkJoinPool pool) {
+        final BatchNormalizationTask task = new BatchNormalizationTask(
+                normalizer, urls, new String[urls.length], new NormalizationResult[urls.length], 0, urls.length);
+        pool.invoke(task);
+        return task.toResult();
+    }
+
+    private BatchResult toResult() {
+        return new BatchResult(normalized, failures);
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= LEAF_SIZE) {
+            normalizeRange();
+        } else {
+            final int middle = (from + to) >>> 1;
+            invokeAll(
+                    new BatchNormalizationTask(normalizer, urls, normalized, failures, from, middle),
+                    new BatchNormalizationTask(normalizer, urls, normalized, failures, middle, to));
+        }
+    }
+
+    private void normalizeRange() {
+        for (int i = from; i < to; i++) {
+            final NormalizationResult result = normalizer.tryApply(urls[i]);
+            if (result.isSuccess()) {
+                normalized[i] = result.get();
+            } else {
+                failures[i] = result;
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package net.nebupookins.normalizeurl;
+
+/**
+ * The outcome of normalizing a batch of urls with {@link UrlNormalizer#applyAll(String[])} or one of its variants.
+ * Each url in the batch either has a normalized form or a failure explaining why it could not be normalized; one
+ * malformed url does not prevent the rest of the batch from being normalized.
+ */
+public final class BatchResult {
+    private final String[] normalized;
+    //Null for the urls that were normalized successfully.
+    private final NormalizationResult[] failures;
+
+    BatchResult(String[] normalized, NormalizationResult[] failures) {
+        this.normalized = normalized;
+        this.failures = failures;
+    }
+
+    /**
+     * @return the number of urls in the batch.
+     */
+    public int size() {
+        return normalized.length;
+    }
+
+    /**
+     * @param index the position of the url in the batch.
+     * @return the normalized form of the url, or null if it could not be normalized.
+     */
+    public String get(int index) {
+        return normalized[index];
+    }
+
+    /**
+     * @param index the position of the url in the batch.
+     * @return the exception {@link UrlNormalizer#apply(String)} throws for the url, created the first time it's asked
+     * for, or null if the url was normalized successfully.
+     */
+    public RuntimeException getFailure(int index) {
+        return failures[index] == null ? null : failures[index].toException();
+    }
+
+    /**
+     * @param index the position of the url in the batch.
+     * @return the reason the url could not be normalized, or null if it was normalized successfully.
+     */
+    public NormalizationError getError(int index) {
+        return failures[index] == null ? null : failures[index].getError();
+    }
+
+    /**
+     * @param index the position of the url in the batch.
+     * @return true if the url was normalized successfully.
+     */
+    public boolean isSuccess(int index) {
+        return failures[index] == null;
+    }
+
+    /**
+     * @return the number of urls in the batch which could not be normalized.
+     */
+    public int getFailureCount() {
+        int count = 0;
+        for (NormalizationResult failure : failures) {
+            if (failure != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the normalized form of every url, in the same order as the batch; entries for urls that could not be
+     * normalized are null. The array is a copy, so changing it doesn't change this result.
+     */
+    public String[] toArray() {
+        return normalized.clone();
+    }
+}
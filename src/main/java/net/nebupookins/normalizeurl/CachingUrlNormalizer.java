@@ -0,0 +1,111 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A UrlNormalizer which remembers the normalized form of the urls it has recently seen, so that repeated urls are only
+ * normalized once. The cache holds at most a fixed number of urls, evicting with the scan-resistant SIEVE policy, so a
+ * burst of urls that are only ever seen once won't flush out the urls that keep recurring.
+ *
+ * <p>Instances are safe to share between any number of threads; cache hits don't take any locks. Urls which the
+ * underlying normalizer fails to normalize are not cached, so they fail again every time.</p>
+ *
+ * <p>{@link #apply(String)} and {@link #tryApply(String)} share the cache. The other methods that normalize a url,
+ * such as {@link #fingerprint128(String, long[])} and {@link #parse(String)}, are passed straight on to the underlying
+ * normalizer, so that they keep whatever shortcuts it takes.</p>
+ */
+public final class CachingUrlNormalizer implements UrlNormalizer {
+    private final UrlNormalizer delegate;
+    private final SieveCache<String, NormalizationResult> cache;
+
+    /**
+     * @param delegate    the normalizer whose results are cached.
+     * @param maximumSize the maximum number of urls to hold in the cache; must be positive.
+     */
+    public CachingUrlNormalizer(UrlNormalizer delegate, int maximumSize) {
+        this.delegate = delegate;
+        this.cache = new SieveCache<>(maximumSize);
+    }
+
+    @Override
+    public String apply(String url) {
+        return tryApply(url).getOrThrow();
+    }
+
+    @Override
+    public NormalizationResult tryApply(String url) {
+        return cache.get(url, delegate::tryApply, NormalizationResult::isSuccess);
+    }
+
+    @Override
+    public boolean equivalent(String url1, String url2) {
+        return delegate.equivalent(url1, url2);
+    }
+
+    @Override
+    public int apply(byte[] url, int offset, int length, byte[] dest, int destOffset) {
+        return delegate.apply(url, offset, length, dest, destOffset);
+    }
+
+    @Override
+    public int apply(ByteBuffer url, ByteBuffer dest) {
+        return delegate.apply(url, dest);
+    }
+
+    @Override
+    public void fingerprint128(String url, long[] dest) {
+        delegate.fingerprint128(url, dest);
+    }
+
+    @Override
+    public long[] fingerprint128(String url) {
+        return delegate.fingerprint128(url);
+    }
+
+    @Override
+    public long fingerprint64(String url) {
+        return delegate.fingerprint64(url);
+    }
+
+    @Override
+    public NormalizedUrl parse(String url) {
+        return delegate.parse(url);
+    }
+
+    /**
+     * @return the maximum number of urls held in the cache.
+     */
+    public int getMaximumSize() {
+        return cache.getMaximumSize();
+    }
+
+    /**
+     * @return the number of urls currently held in the cache.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return the number of calls to {@link #apply(String)} and {@link #tryApply(String)} that were answered from the
+     * cache.
+     */
+    public long getHitCount() {
+        return cache.getHitCount();
+    }
+
+    /**
+     * @return the number of calls to {@link #apply(String)} and {@link #tryApply(String)} that had to be passed on to
+     * the underlying normalizer.
+     */
+    public long getMissCount() {
+        return cache.getMissCount();
+    }
+
+    /**
+     * @return the number of urls that have been evicted from the cache to make room for others.
+     */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+}
@@ -0,0 +1,368 @@
+package net.nebupookins.normalizeurl;
+
+import java.io.ByteArrayOutputStream;
+import java.net.IDN;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Canonicalizes hosts, so that the different ways of writing the same host all end up written the same way:
+ * <ul>
+ * <li>Internationalized domain names, whether written in Unicode or percent-encoded UTF-8, are converted to their
+ * ASCII ("xn--") form.</li>
+ * <li>Trailing dots, as in the fully qualified "example.com.", are removed.</li>
+ * <li>IPv4 addresses written in octal, hex or as fewer than four parts, such as "0x7f.1" or "2130706433", are
+ * written as four decimal parts, "127.0.0.1".</li>
+ * <li>IPv6 addresses are written as recommended by RFC 5952: in lowercase, without leading zeros, and with the
+ * longest run of zero groups compressed to "::".</li>
+ * <li>Everything is lowercased, except the hex digits of percent-encoded triplets, which stay as they are. Only ASCII
+ * letters are lowercased, whatever the default locale.</li>
+ * </ul>
+ * Hosts that can't be canonicalized, such as invalid IP literals, are only lowercased.
+ *
+ * <p>IDN conversion is expensive, and there are far fewer distinct hosts than there are urls, so canonical hosts are
+ * cached.</p>
+ *
+ * @see <a href="https://tools.ietf.org/html/rfc5952">https://tools.ietf.org/html/rfc5952</a>
+ * @see <a href="https://url.spec.whatwg.org/#host-parsing">https://url.spec.whatwg.org/#host-parsing</a>
+ */
+final class HostCanonicalizer {
+    private static final int CACHE_SIZE = 16 * 1024;
+    private static final SieveCache<String, String> CACHE = new SieveCache<>(CACHE_SIZE);
+
+    private static final int IPV6_GROUPS = 8;
+
+    private HostCanonicalizer() {
+    }
+
+    /**
+     * @return the canonical form of the host. To avoid creating a String for the host when there's nothing to do,
+     * callers should check {@link #isCanonical(char[], int, int)} first.
+     */
+    static String canonicalize(String host) {
+        return CACHE.get(host, HostCanonicalizer::canonicalizeUncached);
+    }
+
+    /**
+     * A cheap check for the most common case, a lowercase ASCII domain name, which needs no work. May return false for
+     * some hosts that are in fact canonical, but never returns true for one that isn't.
+     */
+    static boolean isCanonical(char[] chars, int start, int end) {
+        if (start == end || chars[end - 1] == '.') {
+            return false;
+        }
+        int lastLabelStart = start;
+        for (int i = start; i < end; i++) {
+            final char c = chars[i];
+            if (c == '.') {
+                lastLabelStart = i + 1;
+            } else if (!(('a' <= c && c <= 'z') || ('0' <= c && c <= '9') || c == '-')) {
+                return false;
+            }
+        }
+        //A last label that starts with a digit may make the host an IPv4 address.
+        final char lastLabelFirst = chars[lastLabelStart];
+        return lastLabelFirst < '0' || lastLabelFirst > '9';
+    }
+
+    static String canonicalizeUncached(String host) {
+        if (host.startsWith("[") && host.endsWith("]")) {
+            final String address = canonicalIpv6(host.substring(1, host.length() - 1));
+            return address == null ? toLowerCaseOutsideTriplets(host) : "[" + address + "]";
+        }
+        String name = withoutTrailingDots(decodeNonAsciiTriplets(host));
+        if (!isAscii(name)) {
+            try {
+                //Again afterwards, since IDN turns other full stops, such as "\u3002", into dots.
+                name = withoutTrailingDots(IDN.toASCII(name));
+            } catch (IllegalArgumentException e) {
+                //Not a valid internationalized domain name; leave it as it is.
+                return toLowerCaseOutsideTriplets(host);
+            }
+        }
+        name = toLowerCaseOutsideTriplets(name);
+        final String address = canonicalIpv4(name);
+        return address == null ? name : address;
+    }
+
+    /**
+     * @return the name without any of its trailing dots, all of which must go for canonicalizing to be idempotent; but
+     * "." as is.
+     */
+    private static String withoutTrailingDots(String name) {
+        int end = name.length();
+        while (end > 1 && name.charAt(end - 1) == '.') {
+            end--;
+        }
+        return name.substring(0, end);
+    }
+
+    static char toLowerCaseAscii(char c) {
+        return 'A' <= c && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    static String toLowerCaseAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (toLowerCaseAscii(c) != c) {
+                final char[] chars = s.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    chars[j] = toLowerCaseAscii(chars[j]);
+                }
+                return new String(chars);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Same as {@link #toLowerCaseAscii(String)}, except that the two hex digits after each '%' are left as they are, so
+     * that lowercasing a host doesn't undo {@link Normalization#UPPERCASE_PERCENT_ENCODED_TRIPLETS}.
+     */
+    static String toLowerCaseOutsideTriplets(String s) {
+        char[] chars = null;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '%') {
+                i += 2;
+            } else if (toLowerCaseAscii(c) != c) {
+                if (chars == null) {
+                    chars = s.toCharArray();
+                }
+                chars[i] = toLowerCaseAscii(c);
+            }
+        }
+        return chars == null ? s : new String(chars);
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the triplets of non-ASCII octets, which can only be there as parts of percent-encoded UTF-8. Triplets of
+     * ASCII octets are left encoded, since they may stand for delimiters.
+     *
+     * @return the host as is if it has no such triplets, or they aren't valid UTF-8.
+     */
+    private static String decodeNonAsciiTriplets(String host) {
+        if (host.indexOf('%') < 0) {
+            return host;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(host.length());
+        int literalStart = 0;
+        for (int i = 0; i < host.length(); i++) {
+            if (host.charAt(i) != '%' || i + 2 >= host.length()) {
+                continue;
+            }
+            final int high = UrlOctet.hexValue(host.charAt(i + 1));
+            final int low = UrlOctet.hexValue(host.charAt(i + 2));
+            if (high < 8 || low < 0) {
+                continue;
+            }
+            final byte[] literal = host.substring(literalStart, i).getBytes(StandardCharsets.UTF_8);
+            bytes.write(literal, 0, literal.length);
+            bytes.write(high << 4 | low);
+            i += 2;
+            literalStart = i + 1;
+        }
+        final byte[] literal = host.substring(literalStart).getBytes(StandardCharsets.UTF_8);
+        bytes.write(literal, 0, literal.length);
+        try {
+            return Utf8.decode(ByteBuffer.wrap(bytes.toByteArray()));
+        } catch (IllegalArgumentException e) {
+            return host;
+        }
+    }
+
+    /**
+     * Parses the host as an IPv4 address the way the WHATWG URL standard does, accepting from one to four parts, each
+     * of them decimal, octal if it starts with "0", or hex if it starts with "0x".
+     *
+     * @return the address as four decimal parts, or null if the host is not an IPv4 address.
+     */
+    static String canonicalIpv4(String host) {
+        final String[] parts = host.split("\\.", -1);
+        if (parts.length > 4) {
+            return null;
+        }
+        long address = 0;
+        for (int i = 0; i < parts.length; i++) {
+            final long part = parseIpv4Part(parts[i]);
+            final boolean isLast = i == parts.length - 1;
+            if (part < 0 || part >= (isLast ? 1L << (8 * (4 - i)) : 256)) {
+                return null;
+            }
+            address = isLast ? address << (8 * (4 - i)) | part : address << 8 | part;
+        }
+        return (address >> 24) + "." + (address >> 16 & 0xFF) + "." + (address >> 8 & 0xFF) + "." + (address & 0xFF);
+    }
+
+    /**
+     * @return the value of the part, or -1 if it isn't a number or is too large to be part of an address.
+     */
+    private static long parseIpv4Part(String part) {
+        int radix = 10;
+        int start = 0;
+        if (part.length() >= 2 && part.charAt(0) == '0' && (part.charAt(1) == 'x' || part.charAt(1) == 'X')) {
+            radix = 16;
+            start = 2;
+        } else if (part.length() >= 2 && part.charAt(0) == '0') {
+            radix = 8;
+            start = 1;
+        } else if (part.isEmpty()) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < part.length(); i++) {
+            final int digit = Character.digit(part.charAt(i), radix);
+            if (digit < 0 || part.charAt(i) >= 0x80) {
+                return -1;
+            }
+            value = value * radix + digit;
+            if (value > 0xFFFFFFFFL) {
+                return -1;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @param address an IPv6 address, without the brackets around it.
+     * @return the address as recommended by RFC 5952, or null if it isn't a valid IPv6 address. IPvFuture addresses
+     * and addresses with a zone id are not canonicalized either.
+     */
+    static String canonicalIpv6(String address) {
+        final int[] groups = new int[IPV6_GROUPS];
+        int count = 0;
+        int compressedAt = -1;
+        int i = 0;
+        final int end = address.length();
+        if (address.startsWith("::")) {
+            compressedAt = 0;
+            i = 2;
+        }
+        while (i < end) {
+            if (count == IPV6_GROUPS) {
+                return null;
+            }
+            if (address.charAt(i) == ':') {
+                //The second colon of a "::" in the middle, since the first one was consumed as a separator.
+                if (compressedAt >= 0 || i == 0) {
+                    return null;
+                }
+                compressedAt = count;
+                i++;
+                continue;
+            }
+            final int groupStart = i;
+            int group = 0;
+            while (i < end && i - groupStart < 4 && UrlOctet.hexValue(address.charAt(i)) >= 0) {
+                group = group << 4 | UrlOctet.hexValue(address.charAt(i));
+                i++;
+            }
+            if (i < end && address.charAt(i) == '.') {
+                //An IPv4 address in the last 32 bits.
+                final long ipv4 = parseDottedDecimal(address.substring(groupStart));
+                if (ipv4 < 0 || count > IPV6_GROUPS - 2) {
+                    return null;
+                }
+                groups[count++] = (int) (ipv4 >>> 16);
+                groups[count++] = (int) (ipv4 & 0xFFFF);
+                i = end;
+                break;
+            }
+            if (i == groupStart) {
+                return null;
+            }
+            groups[count++] = group;
+            if (i < end) {
+                if (address.charAt(i) != ':' || i + 1 == end) {
+                    return null;
+                }
+                i++;
+            }
+        }
+        if (compressedAt < 0 ? count != IPV6_GROUPS : count == IPV6_GROUPS) {
+            return null;
+        }
+        if (compressedAt >= 0) {
+            final int shift = IPV6_GROUPS - count;
+            System.arraycopy(groups, compressedAt, groups, compressedAt + shift, count - compressedAt);
+            for (int j = compressedAt; j < compressedAt + shift; j++) {
+                groups[j] = 0;
+            }
+        }
+        return formatIpv6(groups);
+    }
+
+    /**
+     * @return the address, or -1 if it isn't four decimal parts.
+     */
+    private static long parseDottedDecimal(String address) {
+        final String[] parts = address.split("\\.", -1);
+        if (parts.length != 4) {
+            return -1;
+        }
+        long value = 0;
+        for (String part : parts) {
+            if (part.isEmpty() || part.length() > 3 || (part.length() > 1 && part.charAt(0) == '0')) {
+                return -1;
+            }
+            int octet = 0;
+            for (int i = 0; i < part.length(); i++) {
+                final char c = part.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                octet = octet * 10 + (c - '0');
+            }
+            if (octet > 0xFF) {
+                return -1;
+            }
+            value = value << 8 | octet;
+        }
+        return value;
+    }
+
+    private static String formatIpv6(int[] groups) {
+        //RFC 5952 section 5: IPv4-mapped addresses keep their IPv4 part in dotted decimal.
+        if (groups[0] == 0 && groups[1] == 0 && groups[2] == 0 && groups[3] == 0 && groups[4] == 0
+                && groups[5] == 0xFFFF) {
+            return "::ffff:" + (groups[6] >> 8) + "." + (groups[6] & 0xFF) + "." + (groups[7] >> 8) + "."
+                    + (groups[7] & 0xFF);
+        }
+        //RFC 5952 section 4.2: compress the longest run of at least two zero groups, the first one if tied.
+        int runStart = -1;
+        int runLength = 1;
+        for (int i = 0; i < IPV6_GROUPS; i++) {
+            int j = i;
+            while (j < IPV6_GROUPS && groups[j] == 0) {
+                j++;
+            }
+            if (j - i > runLength) {
+                runStart = i;
+                runLength = j - i;
+            }
+            i = j;
+        }
+        final StringBuilder formatted = new StringBuilder(39);
+        for (int i = 0; i < IPV6_GROUPS; i++) {
+            if (i == runStart) {
+                formatted.append("::");
+                i += runLength - 1;
+                continue;
+            }
+            if (formatted.length() > 0 && formatted.charAt(formatted.length() - 1) != ':') {
+                formatted.append(':');
+            }
+            formatted.append(Integer.toHexString(groups[i]));
+        }
+        return formatted.toString();
+    }
+}
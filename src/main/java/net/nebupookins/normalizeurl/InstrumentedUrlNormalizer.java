@@ -0,0 +1,232 @@
+package net.nebupookins.normalizeurl;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A UrlNormalizer which gives the same results as another one, while recording how many urls it normalized, how long
+ * each one took, why those that failed did, and how often each normalization actually changed a url. The metrics can
+ * be read with {@link #getMetrics()}, or through JMX once {@link #registerMBean(String) registered}.
+ *
+ * <p>Instances are safe to share between any number of threads. Recording takes no locks: counters are
+ * {@link LongAdder}s and latencies go into a lock-free histogram, so the overhead is a couple of
+ * {@link System#nanoTime()} calls and a few uncontended increments per url. Only {@link #apply(String)} and
+ * {@link #tryApply(String)} are instrumented; the other methods that normalize a url, such as
+ * {@link #fingerprint128(String, long[])} and {@link #parse(String)}, are passed straight on to the underlying
+ * normalizer, so that they keep whatever shortcuts it takes.</p>
+ *
+ * <p>Which normalizations changed a url is only known for the normalizers returned by {@link UrlNormalizer}'s factory
+ * methods and builder, which note it as they go at no extra cost.</p>
+ */
+public final class InstrumentedUrlNormalizer implements UrlNormalizer {
+    private static final Normalization[] NORMALIZATIONS = Normalization.values();
+    private static final NormalizationError[] ERRORS = NormalizationError.values();
+
+    private final UrlNormalizer delegate;
+    //Null unless the delegate is a PlannedUrlNormalizer, whose engine reports the normalizations that changed a url.
+    private final LongAdder[] changedCounts;
+    private final LongAdder count = new LongAdder();
+    //Indexed by the ordinal of the NormalizationError.
+    private final LongAdder[] failureCounts = new LongAdder[ERRORS.length];
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * @param delegate the normalizer to record metrics for.
+     */
+    public InstrumentedUrlNormalizer(UrlNormalizer delegate) {
+        this.delegate = delegate;
+        for (int i = 0; i < failureCounts.length; i++) {
+            failureCounts[i] = new LongAdder();
+        }
+        if (delegate instanceof PlannedUrlNormalizer) {
+            changedCounts = new LongAdder[NORMALIZATIONS.length];
+            for (int i = 0; i < changedCounts.length; i++) {
+                changedCounts[i] = new LongAdder();
+            }
+        } else {
+            changedCounts = null;
+        }
+    }
+
+    @Override
+    public String apply(String url) {
+        return tryApply(url).getOrThrow();
+    }
+
+    @Override
+    public NormalizationResult tryApply(String url) {
+        final long start = System.nanoTime();
+        final NormalizationResult result;
+        try {
+            result = delegate.tryApply(url);
+        } catch (RuntimeException e) {
+            record(start, NormalizationError.OTHER);
+            throw e;
+        }
+        record(start, result.getError());
+        if (changedCounts != null && result.isSuccess()) {
+            int changed = PlannedUrlNormalizer.engine().changedNormalizations();
+            while (changed != 0) {
+                changedCounts[Integer.numberOfTrailingZeros(changed)].increment();
+                changed &= changed - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param error why the url could not be normalized, or null if it was.
+     */
+    private void record(long start, NormalizationError error) {
+        latencies.record(System.nanoTime() - start);
+        count.increment();
+        if (error != null) {
+            failureCounts[error.ordinal()].increment();
+        }
+    }
+
+    @Override
+    public boolean equivalent(String url1, String url2) {
+        return delegate.equivalent(url1, url2);
+    }
+
+    @Override
+    public int apply(byte[] url, int offset, int length, byte[] dest, int destOffset) {
+        return delegate.apply(url, offset, length, dest, destOffset);
+    }
+
+    @Override
+    public int apply(ByteBuffer url, ByteBuffer dest) {
+        return delegate.apply(url, dest);
+    }
+
+    @Override
+    public void fingerprint128(String url, long[] dest) {
+        delegate.fingerprint128(url, dest);
+    }
+
+    @Override
+    public long[] fingerprint128(String url) {
+        return delegate.fingerprint128(url);
+    }
+
+    @Override
+    public long fingerprint64(String url) {
+        return delegate.fingerprint64(url);
+    }
+
+    @Override
+    public NormalizedUrl parse(String url) {
+        return delegate.parse(url);
+    }
+
+    /**
+     * @return a snapshot of the metrics recorded so far.
+     */
+    public NormalizationMetrics getMetrics() {
+        final EnumMap<NormalizationError, Long> failures = new EnumMap<>(NormalizationError.class);
+        for (int i = 0; i < failureCounts.length; i++) {
+            final long failureCount = failureCounts[i].sum();
+            if (failureCount != 0) {
+                failures.put(ERRORS[i], failureCount);
+            }
+        }
+        final EnumMap<Normalization, Long> changed = new EnumMap<>(Normalization.class);
+        if (changedCounts != null) {
+            for (int i = 0; i < changedCounts.length; i++) {
+                changed.put(NORMALIZATIONS[i], changedCounts[i].sum());
+            }
+        }
+        return new NormalizationMetrics(
+                count.sum(),
+                System.nanoTime() - createdNanos,
+                failures,
+                changed,
+                latencies.snapshot(),
+                latencies.getMax());
+    }
+
+    /**
+     * @return a view of this normalizer's metrics that can be registered with any MBean server.
+     */
+    public NormalizationMetricsMXBean asMXBean() {
+        return new MetricsBean();
+    }
+
+    /**
+     * Registers {@link #asMXBean()} with the platform MBean server, where JMX clients such as JConsole can see it.
+     *
+     * @param name the object name to register under, e.g. "net.nebupookins.normalizeurl:type=Normalizer,name=crawler".
+     * @return the name registered under.
+     * @throws JMException if the name is malformed or already registered.
+     */
+    public ObjectName registerMBean(String name) throws JMException {
+        final ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(asMXBean(), objectName);
+        return objectName;
+    }
+
+    private final class MetricsBean implements NormalizationMetricsMXBean {
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public double getThroughputPerSecond() {
+            return getMetrics().getThroughputPerSecond();
+        }
+
+        @Override
+        public long getFailureCount() {
+            return getMetrics().getFailureCount();
+        }
+
+        @Override
+        public Map<String, Long> getFailureCounts() {
+            final Map<String, Long> failures = new HashMap<>();
+            getMetrics().getFailureCounts().forEach((error, failureCount) -> failures.put(error.name(), failureCount));
+            return failures;
+        }
+
+        @Override
+        public Map<String, Long> getChangedCounts() {
+            final Map<String, Long> changed = new HashMap<>();
+            getMetrics().getChangedCounts().forEach((normalization, changedCount) ->
+                    changed.put(normalization.name(), changedCount));
+            return changed;
+        }
+
+        @Override
+        public long getMedianLatencyNanos() {
+            return getMetrics().getLatencyNanos(50);
+        }
+
+        @Override
+        public long get99thPercentileLatencyNanos() {
+            return getMetrics().getLatencyNanos(99);
+        }
+
+        @Override
+        public long get999thPercentileLatencyNanos() {
+            return getMetrics().getLatencyNanos(99.9);
+        }
+
+        @Override
+        public double getMeanLatencyNanos() {
+            return getMetrics().getMeanLatencyNanos();
+        }
+
+        @Override
+        public long getMaxLatencyNanos() {
+            return latencies.getMax();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values, typically latencies in nanoseconds, in the style of HdrHistogram: values below
+ * 64 each get a bucket of their own, and each power of two above that is split into 32 equal buckets, so every value
+ * is recorded to within about 3% while the whole range of a long fits in under 2,000 buckets.
+ *
+ * <p>Recording is lock-free, and safe from any number of threads at once. Reading while values are being recorded
+ * gives a view that may be a few values behind, but never a torn one.</p>
+ */
+final class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //The magnitude, i.e. the index of the highest set bit, of the smallest value not in a linear bucket.
+    private static final int FIRST_MAGNITUDE = 6;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (Long.SIZE - 1 - FIRST_MAGNITUDE) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(bucket(value));
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (magnitude - FIRST_MAGNITUDE) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest value that falls in the bucket.
+     */
+    private static long highestValueIn(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        final int magnitude = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + FIRST_MAGNITUDE;
+        final int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+    }
+
+    /**
+     * @return a copy of the current counts, for computing statistics from.
+     */
+    long[] snapshot() {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param snapshot   counts returned by {@link #snapshot()}.
+     * @param percentile between 0 and 100.
+     * @return a value that at least the given percentage of values are less than or equal to, overestimated by no
+     * more than the bucket width; 0 if nothing was recorded.
+     */
+    static long valueAtPercentile(long[] snapshot, double percentile) {
+        long total = 0;
+        for (long count : snapshot) {
+            total += count;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestValueIn(i);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the mean of the values, taking each value to be the middle of its bucket; 0 if nothing was recorded.
+     */
+    static double mean(long[] snapshot) {
+        long total = 0;
+        double sum = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] != 0) {
+                final long lowest = i == 0 ? 0 : highestValueIn(i - 1) + 1;
+                sum += snapshot[i] * ((lowest + highestValueIn(i)) / 2.0);
+                total += snapshot[i];
+            }
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+}
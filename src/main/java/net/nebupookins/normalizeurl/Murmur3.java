@@ -0,0 +1,118 @@
+package net.nebupookins.normalizeurl;
+
+/**
+ * The x64 128-bit variant of MurmurHash3, with a seed of 0. Its output is the same as that of Guava's
+ * {@code Hashing.murmur3_128()}: the first long is what Guava's {@code HashCode.asLong()} returns.
+ *
+ * @see <a href="https://github.com/aappleby/smhasher/blob/master/src/MurmurHash3.cpp">MurmurHash3.cpp</a>
+ */
+final class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private Murmur3() {
+    }
+
+    /**
+     * Hashes the bytes, writing the two halves of the 128-bit hash to dest[0] and dest[1].
+     */
+    static void hash128(byte[] data, int offset, int length, long[] dest) {
+        long h1 = 0;
+        long h2 = 0;
+        final int blocksEnd = offset + (length & ~15);
+        for (int i = offset; i < blocksEnd; i += 16) {
+            h1 ^= mixK1(getLongLittleEndian(data, i));
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(getLongLittleEndian(data, i + 8));
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+
+        long k1 = 0;
+        long k2 = 0;
+        switch (length & 15) {
+            case 15:
+                k2 ^= (long) (data[blocksEnd + 14] & 0xFF) << 48;
+            case 14:
+                k2 ^= (long) (data[blocksEnd + 13] & 0xFF) << 40;
+            case 13:
+                k2 ^= (long) (data[blocksEnd + 12] & 0xFF) << 32;
+            case 12:
+                k2 ^= (long) (data[blocksEnd + 11] & 0xFF) << 24;
+            case 11:
+                k2 ^= (long) (data[blocksEnd + 10] & 0xFF) << 16;
+            case 10:
+                k2 ^= (long) (data[blocksEnd + 9] & 0xFF) << 8;
+            case 9:
+                k2 ^= (long) (data[blocksEnd + 8] & 0xFF);
+                h2 ^= mixK2(k2);
+            case 8:
+                k1 ^= (long) (data[blocksEnd + 7] & 0xFF) << 56;
+            case 7:
+                k1 ^= (long) (data[blocksEnd + 6] & 0xFF) << 48;
+            case 6:
+                k1 ^= (long) (data[blocksEnd + 5] & 0xFF) << 40;
+            case 5:
+                k1 ^= (long) (data[blocksEnd + 4] & 0xFF) << 32;
+            case 4:
+                k1 ^= (long) (data[blocksEnd + 3] & 0xFF) << 24;
+            case 3:
+                k1 ^= (long) (data[blocksEnd + 2] & 0xFF) << 16;
+            case 2:
+                k1 ^= (long) (data[blocksEnd + 1] & 0xFF) << 8;
+            case 1:
+                k1 ^= (long) (data[blocksEnd] & 0xFF);
+                h1 ^= mixK1(k1);
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+        dest[0] = h1;
+        dest[1] = h2;
+    }
+
+    private static long getLongLittleEndian(byte[] data, int index) {
+        return (data[index] & 0xFFL)
+                | (data[index + 1] & 0xFFL) << 8
+                | (data[index + 2] & 0xFFL) << 16
+                | (data[index + 3] & 0xFFL) << 24
+                | (data[index + 4] & 0xFFL) << 32
+                | (data[index + 5] & 0xFFL) << 40
+                | (data[index + 6] & 0xFFL) << 48
+                | (data[index + 7] & 0xFFL) << 56;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,112 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of names, compiled into a trie so that whether a name in a char array is in the set can be
+ * checked in time proportional to the length of the name, without creating a String for it. Names ending in '*' match
+ * every name that starts with what comes before the '*', e.g. "utm_*" matches "utm_source".
+ *
+ * <p>The trie is stored as flat arrays: the edges leaving each node are contiguous and sorted by label.</p>
+ */
+final class NameTrie {
+    private static final byte EXACT = 1;
+    private static final byte PREFIX = 1 << 1;
+
+    /**
+     * The edges leaving node n are the indices from edgeStarts[n] to edgeStarts[n + 1].
+     */
+    private final int[] edgeStarts;
+    private final char[] edgeLabels;
+    private final int[] edgeTargets;
+    private final byte[] flags;
+
+    NameTrie(Collection<String> names) {
+        final Node root = new Node();
+        int nodeCount = 1;
+        for (String name : names) {
+            final boolean isPrefix = name.endsWith("*");
+            final int length = isPrefix ? name.length() - 1 : name.length();
+            Node node = root;
+            for (int i = 0; i < length; i++) {
+                final char c = name.charAt(i);
+                Node child = node.children.get(c);
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(c, child);
+                    nodeCount++;
+                }
+                node = child;
+            }
+            node.flags |= isPrefix ? PREFIX : EXACT;
+        }
+
+        this.edgeStarts = new int[nodeCount + 1];
+        this.edgeLabels = new char[nodeCount - 1];
+        this.edgeTargets = new int[nodeCount - 1];
+        this.flags = new byte[nodeCount];
+        //Number the nodes breadth first, so that each node's children get consecutive numbers.
+        final Node[] queue = new Node[nodeCount];
+        queue[0] = root;
+        int queued = 1;
+        for (int n = 0; n < nodeCount; n++) {
+            final Node node = queue[n];
+            flags[n] = node.flags;
+            edgeStarts[n] = queued - 1;
+            for (Map.Entry<Character, Node> child : node.children.entrySet()) {
+                edgeLabels[queued - 1] = child.getKey();
+                edgeTargets[queued - 1] = queued;
+                queue[queued++] = child.getValue();
+            }
+        }
+        edgeStarts[nodeCount] = nodeCount - 1;
+    }
+
+    private static final class Node {
+        final TreeMap<Character, Node> children = new TreeMap<>();
+        byte flags;
+    }
+
+    boolean isEmpty() {
+        return flags.length == 1 && flags[0] == 0;
+    }
+
+    /**
+     * @return whether the name in chars[start, end) is in the set.
+     */
+    boolean contains(char[] chars, int start, int end) {
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            if ((flags[node] & PREFIX) != 0) {
+                return true;
+            }
+            node = child(node, chars[i]);
+            if (node < 0) {
+                return false;
+            }
+        }
+        return (flags[node] & (EXACT | PREFIX)) != 0;
+    }
+
+    /**
+     * @return the node that the edge labelled c leads to from node, or -1 if there is no such edge.
+     */
+    private int child(int node, char c) {
+        int low = edgeStarts[node];
+        int high = edgeStarts[node + 1] - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char label = edgeLabels[middle];
+            if (label < c) {
+                low = middle + 1;
+            } else if (label > c) {
+                high = middle - 1;
+            } else {
+                return edgeTargets[middle];
+            }
+        }
+        return -1;
+    }
+}
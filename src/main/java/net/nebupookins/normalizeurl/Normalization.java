@@ -0,0 +1,79 @@
+package net.nebupookins.normalizeurl;
+
+/**
+ * The individual normalizations that a {@link UrlNormalizer} built with {@link UrlNormalizerBuilder} can perform. The
+ * first six are the ones performed by {@link UrlNormalizer#semanticPreservingNormalizer()}; the others may change
+ * which resource the url refers to for some servers, and so are only performed when asked for explicitly.
+ *
+ * <p>The normalizations that rewrite the query also percent-encode, as UTF-8, any character in it that may not appear
+ * literally in a query, e.g. a space becomes "%20".</p>
+ *
+ * @see <a href="https://en.wikipedia.org/wiki/URI_normalization">https://en.wikipedia.org/wiki/URI_normalization</a>
+ */
+public enum Normalization {
+    /**
+     * Uppercases the hex digits of percent-encoded triplets, e.g. "%3a" becomes "%3A".
+     */
+    UPPERCASE_PERCENT_ENCODED_TRIPLETS,
+    /**
+     * Lowercases the scheme and the host, e.g. "HTTP://Example.COM/" becomes "http://example.com/".
+     */
+    LOWERCASE_SCHEME_AND_HOST,
+    /**
+     * Decodes percent-encoded triplets of unreserved characters, e.g. "%7E" becomes "~".
+     */
+    DECODE_UNRESERVED_CHARACTERS,
+    /**
+     * Removes "." and ".." segments from the path, e.g. "/a/./b/../c" becomes "/a/c".
+     */
+    REMOVE_DOT_SEGMENTS,
+    /**
+     * Replaces the empty path of a url that has an authority with "/", e.g. "http://example.com" becomes
+     * "http://example.com/".
+     */
+    NORMALIZE_EMPTY_PATH,
+    /**
+     * Removes the port if it is the default one for the scheme, e.g. "http://example.com:80/" becomes
+     * "http://example.com/" and "https://example.com:443/" becomes "https://example.com/", but
+     * "https://example.com:80/" is left alone. See {@link UrlNormalizerBuilder#defaultPort(String, int)}.
+     */
+    REMOVE_DEFAULT_PORT,
+    /**
+     * Removes the fragment, e.g. "http://example.com/#top" becomes "http://example.com/".
+     */
+    REMOVE_FRAGMENT,
+    /**
+     * Removes trailing slashes from paths other than "/", e.g. "http://example.com/a/" and "http://example.com/a//"
+     * become "http://example.com/a".
+     */
+    REMOVE_TRAILING_SLASH,
+    /**
+     * Sorts the query parameters by name, keeping parameters with the same name in their original order, e.g.
+     * "?b=2&amp;a=1" becomes "?a=1&amp;b=2".
+     */
+    SORT_QUERY_PARAMETERS,
+    /**
+     * Removes the query parameters whose names were given to
+     * {@link UrlNormalizerBuilder#removeQueryParameters(java.util.Collection)}, e.g. tracking parameters such as
+     * "utm_source". A query left without parameters is removed altogether.
+     */
+    REMOVE_QUERY_PARAMETERS,
+    /**
+     * Writes each host in a single canonical form: internationalized domain names are converted to their ASCII
+     * ("xn--") form, a trailing dot is removed, and IPv4 and IPv6 addresses are written in their usual forms, e.g.
+     * "http://B\u00FCcher.example./" becomes "http://xn--bcher-kva.example/", "http://0x7f.1/" becomes
+     * "http://127.0.0.1/" and "http://[2001:DB8:0:0:0:0:0:1]/" becomes "http://[2001:db8::1]/".
+     */
+    CANONICALIZE_HOST,
+    /**
+     * Removes query parameters that are identical, name and value, to an earlier parameter, e.g. "?a=1&amp;b&amp;a=1"
+     * becomes "?a=1&amp;b".
+     */
+    REMOVE_DUPLICATE_QUERY_PARAMETERS,
+    /**
+     * Repairs urls that would otherwise be rejected or passed through as they are, by percent-encoding, as UTF-8, the
+     * characters that may not appear in a url at all, and every '%' that doesn't start a valid triplet, e.g.
+     * "http://example.com/a b/100%/%zz" becomes "http://example.com/a%20b/100%25/%25zz".
+     */
+    REPAIR_INVALID_CHARACTERS,
+}
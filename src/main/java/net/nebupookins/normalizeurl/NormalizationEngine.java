@@ -0,0 +1,875 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fused implementation of the {@link Normalization}s selected by a {@link NormalizationPlan}. The url is split into
+ * components by {@link UrlComponents} without copying them out, and rather than rebuilding every component once per
+ * normalization, each component is scanned exactly once and the normalized form is written directly into a single
+ * output buffer, which is reused from one call to the next.
+ *
+ * <p>Instances hold mutable scratch state and are therefore not thread safe; each instance should be confined to a
+ * single thread. They are not tied to a plan, so one instance can serve any number of normalizers.</p>
+ */
+final class NormalizationEngine {
+    //The components of a url, in the order they are normalized and appended.
+    private static final int SCHEME = 0;
+    private static final int AUTHORITY = SCHEME + 1;
+    private static final int PATH = AUTHORITY + 1;
+    private static final int QUERY = PATH + 1;
+    private static final int FRAGMENT = QUERY + 1;
+    private static final int DONE = FRAGMENT + 1;
+
+    //Bits of changes, one for each Normalization.
+    private static final int UPPERCASED_TRIPLETS = bit(Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS);
+    private static final int LOWERCASED = bit(Normalization.LOWERCASE_SCHEME_AND_HOST);
+    private static final int DECODED_TRIPLETS = bit(Normalization.DECODE_UNRESERVED_CHARACTERS);
+    private static final int REMOVED_DOT_SEGMENTS = bit(Normalization.REMOVE_DOT_SEGMENTS);
+    private static final int NORMALIZED_EMPTY_PATH = bit(Normalization.NORMALIZE_EMPTY_PATH);
+    private static final int REMOVED_DEFAULT_PORT = bit(Normalization.REMOVE_DEFAULT_PORT);
+    private static final int REMOVED_FRAGMENT = bit(Normalization.REMOVE_FRAGMENT);
+    private static final int REMOVED_TRAILING_SLASH = bit(Normalization.REMOVE_TRAILING_SLASH);
+    private static final int CANONICALIZED_HOST = bit(Normalization.CANONICALIZE_HOST);
+    private static final int REPAIRED_CHARACTERS = bit(Normalization.REPAIR_INVALID_CHARACTERS);
+
+    private final UrlComponents parsed = new UrlComponents();
+    private char[] ownInput = new char[128];
+    //The url being normalized, which is either this engine's own or one split earlier, see use().
+    private UrlComponents components = parsed;
+    private char[] input = ownInput;
+    private NormalizationPlan plan;
+    private char[] buffer = new char[128];
+    private int length;
+    //Either input or buffer, whichever holds the url last normalized by normalizeToChars().
+    private char[] charOutput = buffer;
+    private int changes;
+    private int nextComponent;
+    //Whether errors are recorded in error and errorOffset, rather than thrown; see tryNormalize().
+    private boolean recordErrors;
+    private NormalizationError error;
+    private int errorOffset;
+    private byte[] bytes = new byte[128];
+    private final byte[] utf8 = new byte[4];
+    private final long[] fingerprint = new long[2];
+    private final QueryRewriter queryRewriter = new QueryRewriter();
+
+    /**
+     * @return the normalized url, which is url itself rather than an equal copy if url was already normalized.
+     */
+    String normalize(NormalizationPlan plan, String url) {
+        load(plan, url);
+        if (isNormalized(url.length())) {
+            return url;
+        }
+        appendRemainingComponents();
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Same as {@link #normalize(NormalizationPlan, String)}, except that a url that can't be normalized results in a
+     * failed result rather than an exception, so that dirty input costs no more than clean input.
+     */
+    NormalizationResult tryNormalize(NormalizationPlan plan, String url) {
+        copy(url);
+        if (!parsed.parse(input, 0, url.length())) {
+            return NormalizationResult.failure(url, parsed.error, parsed.errorOffset);
+        }
+        use(plan, input, parsed);
+        if (isNormalized(url.length())) {
+            return NormalizationResult.success(url);
+        }
+        recordErrors = true;
+        appendRemainingComponents();
+        if (error != null) {
+            return NormalizationResult.failure(url, error, errorOffset);
+        }
+        return NormalizationResult.success(new String(buffer, 0, length));
+    }
+
+    /**
+     * Normalizes the url without creating any String for either it or its normalized form. If recordErrors is set, a
+     * url that can't be normalized results in {@link #error()} and {@link #errorOffset()} being set rather than an
+     * exception.
+     *
+     * @return the length of the normalized url, which is at the start of {@link #charOutput()} until the engine is next
+     * used, or -1 if errors are recorded and the url can't be normalized.
+     */
+    int normalizeToChars(NormalizationPlan plan, CharSequence url, boolean recordErrors) {
+        copy(url);
+        if (!parsed.parse(input, 0, url.length())) {
+            if (!recordErrors) {
+                throw parsed.exception(parsed.error, parsed.errorOffset);
+            }
+            error = parsed.error;
+            errorOffset = parsed.errorOffset;
+            return -1;
+        }
+        use(plan, input, parsed);
+        if (isNormalized(url.length())) {
+            charOutput = input;
+            return url.length();
+        }
+        this.recordErrors = recordErrors;
+        appendRemainingComponents();
+        charOutput = buffer;
+        return error == null ? length : -1;
+    }
+
+    char[] charOutput() {
+        return charOutput;
+    }
+
+    /**
+     * @return the reason the url last normalized by {@link #normalizeToChars} couldn't be, or null if it could.
+     */
+    NormalizationError error() {
+        return error;
+    }
+
+    int errorOffset() {
+        return errorOffset;
+    }
+
+    /**
+     * Normalizes the UTF-8 encoded url in src into dest, without ever materializing either as a String.
+     *
+     * @return the number of bytes written to dest.
+     * @throws BufferOverflowException if dest doesn't have room for the normalized url; nothing is written in that case.
+     */
+    int normalize(NormalizationPlan plan, byte[] src, int srcOffset, int srcLength, byte[] dest, int destOffset) {
+        ensureInputCapacity(srcLength);
+        normalizeInput(plan, Utf8.decode(src, srcOffset, srcLength, input));
+        if (Utf8.encodedLength(buffer, 0, length) > dest.length - destOffset) {
+            throw new BufferOverflowException();
+        }
+        return Utf8.encode(buffer, 0, length, dest, destOffset);
+    }
+
+    /**
+     * Same as {@link #normalize(NormalizationPlan, byte[], int, int, byte[], int)}, reading src's remaining bytes and
+     * writing to dest's remaining space. Both buffers' positions are advanced past the bytes read and written, unless
+     * an exception is thrown, in which case neither is modified.
+     */
+    int normalize(NormalizationPlan plan, ByteBuffer src, ByteBuffer dest) {
+        final int srcLength = src.remaining();
+        final byte[] srcArray;
+        final int srcOffset;
+        if (src.hasArray()) {
+            srcArray = src.array();
+            srcOffset = src.arrayOffset() + src.position();
+        } else {
+            srcArray = ensureBytesCapacity(srcLength);
+            src.duplicate().get(srcArray, 0, srcLength);
+            srcOffset = 0;
+        }
+        ensureInputCapacity(srcLength);
+        normalizeInput(plan, Utf8.decode(srcArray, srcOffset, srcLength, input));
+        final int written = Utf8.encodedLength(buffer, 0, length);
+        if (written > dest.remaining()) {
+            throw new BufferOverflowException();
+        }
+        if (dest.hasArray()) {
+            Utf8.encode(buffer, 0, length, dest.array(), dest.arrayOffset() + dest.position());
+            dest.position(dest.position() + written);
+        } else {
+            final byte[] encoded = ensureBytesCapacity(written);
+            Utf8.encode(buffer, 0, length, encoded, 0);
+            dest.put(encoded, 0, written);
+        }
+        src.position(src.position() + srcLength);
+        return written;
+    }
+
+    /**
+     * Writes the 128-bit {@link Murmur3} hash of the UTF-8 encoded normalized form of the url to dest[0] and dest[1],
+     * without creating a String for the normalized form.
+     */
+    void fingerprint(NormalizationPlan plan, String url, long[] dest) {
+        //The length first, since normalizing may replace the bytes array.
+        final int length = normalizeToUtf8(plan, url);
+        Murmur3.hash128(bytes, 0, length, dest);
+    }
+
+    /**
+     * Normalizes the url and encodes the normalized form as UTF-8, without creating a String for it.
+     *
+     * @return the number of bytes, which are at the start of {@link #utf8Output()} until the engine is next used.
+     */
+    int normalizeToUtf8(NormalizationPlan plan, String url) {
+        load(plan, url);
+        appendRemainingComponents();
+        final byte[] encoded = ensureBytesCapacity(Utf8.encodedLength(buffer, 0, length));
+        return Utf8.encode(buffer, 0, length, encoded, 0);
+    }
+
+    byte[] utf8Output() {
+        return bytes;
+    }
+
+    /**
+     * @return the first half of the fingerprint that {@link #fingerprint(NormalizationPlan, String, long[])} would
+     * compute.
+     */
+    long fingerprint64(NormalizationPlan plan, String url) {
+        fingerprint(plan, url, fingerprint);
+        return fingerprint[0];
+    }
+
+    static int bit(Normalization normalization) {
+        return 1 << normalization.ordinal();
+    }
+
+    /**
+     * @return a bit set, as built by {@link #bit(Normalization)}, of the normalizations that changed the url last
+     * normalized by {@link #normalize(NormalizationPlan, String)}. Keeping track of these costs next to nothing: a
+     * bit is set where a normalization's work is done anyway.
+     */
+    int changedNormalizations() {
+        return changes;
+    }
+
+    /**
+     * Same as {@link #normalize(NormalizationPlan, String)}, for a url that has already been split into components.
+     */
+    String normalize(NormalizationPlan plan, char[] input, UrlComponents components) {
+        use(plan, input, components);
+        appendRemainingComponents();
+        return new String(buffer, 0, length);
+    }
+
+    //Normalize a single component of a url that has already been split, without the delimiters around it. Those
+    //that return null do so if the component is absent, or would be removed by the plan.
+
+    String normalizeScheme(NormalizationPlan plan, char[] input, UrlComponents components) {
+        use(plan, input, components);
+        appendComponent(components.start, components.schemeEnd, plan.lowercaseSchemeAndHost);
+        return new String(buffer, 0, length);
+    }
+
+    String normalizeUserInfo(NormalizationPlan plan, char[] input, UrlComponents components) {
+        if (components.userInfoStart == UrlComponents.ABSENT) {
+            return null;
+        }
+        use(plan, input, components);
+        appendComponent(components.userInfoStart, components.userInfoEnd, false);
+        return new String(buffer, 0, length);
+    }
+
+    String normalizeHost(NormalizationPlan plan, char[] input, UrlComponents components) {
+        if (!components.hasAuthority()) {
+            return null;
+        }
+        use(plan, input, components);
+        appendHost();
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * @return the port, or {@link UrlComponents#ABSENT} if there is none or it would be removed by the plan.
+     */
+    static int normalizePort(NormalizationPlan plan, UrlComponents components) {
+        return isDefaultPort(plan, components) ? UrlComponents.ABSENT : components.port;
+    }
+
+    /**
+     * @return whether the url has a port which the plan removes as the default port of its scheme.
+     */
+    private static boolean isDefaultPort(NormalizationPlan plan, UrlComponents c) {
+        return plan.removeDefaultPort && c.port != UrlComponents.ABSENT
+                && c.port == plan.schemes.defaultPort(c.input, c.start, c.schemeEnd);
+    }
+
+    String normalizePath(NormalizationPlan plan, char[] input, UrlComponents components) {
+        use(plan, input, components);
+        appendPath(components.pathStart, pathEnd(), components.hasAuthority());
+        if (components.queryStart != UrlComponents.ABSENT && plan.removeQueryParameters && !fragmentFollows()
+                && length > 0 && buffer[length - 1] <= ' ') {
+            //Whether the whitespace ends the url depends on whether any of the query is left; see appendQuery().
+            final int pathLength = length;
+            appendQuery();
+            length = Math.min(length, pathLength);
+        }
+        return new String(buffer, 0, length);
+    }
+
+    String normalizeQuery(NormalizationPlan plan, char[] input, UrlComponents components) {
+        if (components.queryStart == UrlComponents.ABSENT) {
+            return null;
+        }
+        use(plan, input, components);
+        appendQuery();
+        return length == 0 ? null : new String(buffer, 1, length - 1);
+    }
+
+    String normalizeFragment(NormalizationPlan plan, char[] input, UrlComponents components) {
+        if (components.fragmentStart == UrlComponents.ABSENT || plan.removeFragment) {
+            return null;
+        }
+        use(plan, input, components);
+        appendComponent(components.fragmentStart, components.fragmentEnd, false);
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Normalizes the two urls in lockstep, one component at a time, stopping as soon as their normalized forms are
+     * known to differ. Each url is normalized by its own engine.
+     *
+     * @return the same as comparing the two urls' normalized forms for equality, provided both urls can be normalized.
+     * If one of them can't, this either throws like {@link #normalize(NormalizationPlan, String)} would or returns
+     * false.
+     */
+    static boolean equivalent(
+            NormalizationPlan plan, NormalizationEngine left, String leftUrl, NormalizationEngine right, String rightUrl) {
+        left.load(plan, leftUrl);
+        right.load(plan, rightUrl);
+        int compared = 0;
+        while (true) {
+            final boolean leftHadMore = left.appendNextComponent();
+            final boolean rightHadMore = right.appendNextComponent();
+            final int comparable = Math.min(left.length, right.length);
+            for (; compared < comparable; compared++) {
+                if (left.buffer[compared] != right.buffer[compared]) {
+                    return false;
+                }
+            }
+            if (!leftHadMore && !rightHadMore) {
+                return left.length == right.length;
+            }
+        }
+    }
+
+    /**
+     * Makes the engine's own input array the current {@link #input}, growing it if needed.
+     */
+    private void ensureInputCapacity(int required) {
+        if (required > ownInput.length) {
+            ownInput = new char[Math.max(required, ownInput.length * 2)];
+        }
+        input = ownInput;
+    }
+
+    private byte[] ensureBytesCapacity(int required) {
+        if (required > bytes.length) {
+            bytes = new byte[Math.max(required, bytes.length * 2)];
+        }
+        return bytes;
+    }
+
+    private void load(NormalizationPlan plan, String url) {
+        copy(url);
+        begin(plan, url.length());
+    }
+
+    private void copy(CharSequence url) {
+        final int urlLength = url.length();
+        ensureInputCapacity(urlLength);
+        if (url instanceof String) {
+            ((String) url).getChars(0, urlLength, input, 0);
+        } else if (url instanceof StringBuilder) {
+            ((StringBuilder) url).getChars(0, urlLength, input, 0);
+        } else {
+            for (int i = 0; i < urlLength; i++) {
+                input[i] = url.charAt(i);
+            }
+        }
+    }
+
+    /**
+     * Normalizes the first inputLength chars of {@link #input} into {@link #buffer}.
+     */
+    private void normalizeInput(NormalizationPlan plan, int inputLength) {
+        begin(plan, inputLength);
+        appendRemainingComponents();
+    }
+
+    /**
+     * Splits the first inputLength chars of {@link #input} into components and empties {@link #buffer}, ready for the
+     * components to be normalized one by one by {@link #appendNextComponent()}.
+     */
+    private void begin(NormalizationPlan plan, int inputLength) {
+        if (!parsed.parse(input, 0, inputLength)) {
+            throw parsed.exception(parsed.error, parsed.errorOffset);
+        }
+        use(plan, input, parsed);
+    }
+
+    /**
+     * Prepares to normalize the url in input, which has already been split into components, from its first component
+     * on.
+     */
+    private void use(NormalizationPlan plan, char[] input, UrlComponents components) {
+        this.plan = plan;
+        this.input = input;
+        this.components = components;
+        length = 0;
+        changes = 0;
+        nextComponent = SCHEME;
+        recordErrors = false;
+        error = null;
+    }
+
+    /**
+     * Checks, without writing anything to {@link #buffer}, whether the loaded url is already in the form that
+     * {@link #appendRemainingComponents()} would produce. This is much cheaper than normalizing, and pays off because
+     * urls are often normalized more than once.
+     *
+     * <p>This may return false for some urls which are in fact normalized, as long as it never returns true for one
+     * that isn't.</p>
+     */
+    private boolean isNormalized(int inputLength) {
+        final UrlComponents c = components;
+        final NormalizationPlan plan = this.plan;
+        if (c.start != 0 || c.end != inputLength
+                || !isNormalized(c.start, c.schemeEnd, plan.lowercaseSchemeAndHost)) {
+            return false;
+        }
+        if (c.hasAuthority()) {
+            if (c.userInfoStart != UrlComponents.ABSENT && !isNormalized(c.userInfoStart, c.userInfoEnd, false)) {
+                return false;
+            }
+            if (!isNormalized(c.hostStart, c.hostEnd, plan.lowercaseSchemeAndHost)
+                    || (plan.canonicalizeHost && !HostCanonicalizer.isCanonical(input, c.hostStart, c.hostEnd))) {
+                return false;
+            }
+            if (c.port == UrlComponents.ABSENT) {
+                //An empty port is dropped along with its ':'.
+                if (c.hostEnd != c.pathStart) {
+                    return false;
+                }
+            } else if (isDefaultPort(plan, c)
+                    || (input[c.portStart] == '0' && c.portEnd - c.portStart > 1)) {
+                return false;
+            }
+        }
+        if (!isPathNormalized(c.pathStart, c.pathEnd, c.hasAuthority())) {
+            return false;
+        }
+        if (c.queryStart != UrlComponents.ABSENT
+                && (plan.rewriteQuery || !isNormalized(c.queryStart, c.queryEnd, false))) {
+            return false;
+        }
+        return c.fragmentStart == UrlComponents.ABSENT
+                || (!plan.removeFragment && isNormalized(c.fragmentStart, c.fragmentEnd, false));
+    }
+
+    /**
+     * @return whether {@link #appendComponent(int, int, boolean)} would append the component unchanged.
+     */
+    private boolean isNormalized(int start, int end, boolean toLowerCase) {
+        final char[] input = this.input;
+        final NormalizationPlan plan = this.plan;
+        final boolean parsePercentEncodedTriplets = plan.parsePercentEncodedTriplets;
+        final boolean repairInvalidCharacters = plan.repairInvalidCharacters;
+        for (int i = start; i < end; i++) {
+            final char c = input[i];
+            if (c == '%' && parsePercentEncodedTriplets) {
+                if (i + 2 >= end) {
+                    return false;
+                }
+                final char highDigit = input[i + 1];
+                final char lowDigit = input[i + 2];
+                final int high = UrlOctet.hexValue(highDigit);
+                final int low = UrlOctet.hexValue(lowDigit);
+                if (high < 0 || low < 0) {
+                    return false;
+                }
+                final char octet = (char) (high << 4 | low);
+                if (plan.decodeUnreservedCharacters && !UrlOctet.needsEncoding(octet)) {
+                    return false;
+                }
+                if (plan.uppercasePercentEncodedTriplets
+                        && (highDigit != UrlOctet.highHexDigit(octet) || lowDigit != UrlOctet.lowHexDigit(octet))) {
+                    return false;
+                }
+                i += 2;
+            } else if (repairInvalidCharacters && !UrlOctet.isAllowedInUrl(c)) {
+                return false;
+            } else if (toLowerCase && HostCanonicalizer.toLowerCaseAscii(c) != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether {@link #appendPath(int, int, boolean)} would append the path unchanged.
+     */
+    private boolean isPathNormalized(int start, int end, boolean hasAuthority) {
+        final NormalizationPlan plan = this.plan;
+        if (!isNormalized(start, end, false)) {
+            return false;
+        }
+        if (plan.removeDotSegments && hasDotSegments(start, end)) {
+            return false;
+        }
+        if (plan.removeTrailingSlash && end - start > 1 && input[end - 1] == '/') {
+            return false;
+        }
+        return !(plan.normalizeEmptyPath && start == end && hasAuthority);
+    }
+
+    /**
+     * @return whether any segment of the path is "." or "..", the only segments that dot-segment removal changes.
+     */
+    private boolean hasDotSegments(int start, int end) {
+        final char[] input = this.input;
+        int segmentStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || input[i] == '/') {
+                final int segmentLength = i - segmentStart;
+                if ((segmentLength == 1 || segmentLength == 2)
+                        && input[segmentStart] == '.' && input[i - 1] == '.') {
+                    return true;
+                }
+                segmentStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    private void appendRemainingComponents() {
+        while (appendNextComponent()) {
+            //keep going
+        }
+    }
+
+    /**
+     * Appends the normalized form of the next component, including the delimiter that introduces it, to
+     * {@link #buffer}. Once a component has been appended, the part of the buffer before it is final.
+     *
+     * @return false if there were no components left to append.
+     */
+    private boolean appendNextComponent() {
+        final UrlComponents c = components;
+        final NormalizationPlan plan = this.plan;
+        switch (nextComponent++) {
+            case SCHEME:
+                appendComponent(c.start, c.schemeEnd, plan.lowercaseSchemeAndHost);
+                append(':');
+                return true;
+            case AUTHORITY:
+                if (c.hasAuthority()) {
+                    append('/');
+                    append('/');
+                    if (c.userInfoStart != UrlComponents.ABSENT) {
+                        appendComponent(c.userInfoStart, c.userInfoEnd, false);
+                        append('@');
+                    }
+                    appendHost();
+                    final int port = normalizePort(plan, c);
+                    if (port != UrlComponents.ABSENT) {
+                        append(':');
+                        appendPort(port);
+                    } else if (c.port != UrlComponents.ABSENT) {
+                        changes |= REMOVED_DEFAULT_PORT;
+                    }
+                }
+                return true;
+            case PATH:
+                appendPath(c.pathStart, pathEnd(), c.hasAuthority());
+                return true;
+            case QUERY:
+                if (c.queryStart != UrlComponents.ABSENT) {
+                    appendQuery();
+                }
+                return true;
+            case FRAGMENT:
+                if (c.fragmentStart != UrlComponents.ABSENT) {
+                    if (plan.removeFragment) {
+                        changes |= REMOVED_FRAGMENT;
+                    } else {
+                        append('#');
+                        appendComponent(c.fragmentStart, c.fragmentEnd, false);
+                    }
+                }
+                return true;
+            default:
+                nextComponent = DONE;
+                return false;
+        }
+    }
+
+    /**
+     * Appends the component, uppercasing the hex digits of percent-encoded triplets, decoding the triplets that
+     * represent unreserved characters, repairing invalid characters and lowercasing everything else, as far as each
+     * of those is called for by the plan and toLowerCase.
+     */
+    private void appendComponent(int start, int end, boolean toLowerCase) {
+        final char[] input = this.input;
+        final boolean parsePercentEncodedTriplets = plan.parsePercentEncodedTriplets;
+        final boolean repairInvalidCharacters = plan.repairInvalidCharacters;
+        ensureCapacity(end - start);
+        boolean lowercased = false;
+        for (int i = start; i < end; i++) {
+            final char c = input[i];
+            if (c == '%' && parsePercentEncodedTriplets) {
+                if (i + 2 >= end) {
+                    appendInvalidTriplet(i, end, NormalizationError.TRUNCATED_PERCENT_ENCODED_TRIPLET);
+                    continue;
+                }
+                final int high = UrlOctet.hexValue(input[i + 1]);
+                final int low = UrlOctet.hexValue(input[i + 2]);
+                if (high < 0 || low < 0) {
+                    appendInvalidTriplet(i, end, NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET);
+                    continue;
+                }
+                appendOctet((char) (high << 4 | low), i, toLowerCase);
+                i += 2;
+            } else if (repairInvalidCharacters && !UrlOctet.isAllowedInUrl(c)) {
+                i += appendEncoded(i, end) - 1;
+            } else if (toLowerCase) {
+                final char lower = HostCanonicalizer.toLowerCaseAscii(c);
+                lowercased |= lower != c;
+                buffer[length++] = lower;
+            } else {
+                buffer[length++] = c;
+            }
+        }
+        if (lowercased) {
+            changes |= LOWERCASED;
+        }
+    }
+
+    /**
+     * Appends the '%' at index i of {@link #input}, which doesn't start a valid triplet, as "%25" if the plan repairs
+     * invalid characters, and fails otherwise.
+     *
+     * @param end the end of the component the '%' is in.
+     */
+    private void appendInvalidTriplet(int i, int end, NormalizationError error) {
+        if (plan.repairInvalidCharacters) {
+            ensureCapacity(end - i + 2);
+            buffer[length++] = '%';
+            buffer[length++] = '2';
+            buffer[length++] = '5';
+            changes |= REPAIRED_CHARACTERS;
+        } else {
+            fail(error, i);
+            buffer[length++] = '%';
+        }
+    }
+
+    /**
+     * Appends the char at index i of {@link #input}, or the surrogate pair starting there, as percent-encoded UTF-8.
+     *
+     * @param end the end of the component the char is in.
+     * @return the number of chars encoded.
+     */
+    private int appendEncoded(int i, int end) {
+        final char[] input = this.input;
+        final int charLength = Character.isHighSurrogate(input[i]) && i + 1 < end
+                && Character.isLowSurrogate(input[i + 1]) ? 2 : 1;
+        final int byteLength = Utf8.encode(input, i, charLength, utf8, 0);
+        ensureCapacity(byteLength * 3 + end - i);
+        for (int b = 0; b < byteLength; b++) {
+            final int octet = utf8[b] & 0xFF;
+            buffer[length++] = '%';
+            buffer[length++] = UrlOctet.highHexDigit(octet);
+            buffer[length++] = UrlOctet.lowHexDigit(octet);
+        }
+        changes |= REPAIRED_CHARACTERS;
+        return charLength;
+    }
+
+    /**
+     * Reports an error at the given index of {@link #input}: by throwing, unless called from
+     * {@link #tryNormalize(NormalizationPlan, String)}, in which case the first error is recorded and normalization
+     * carries on, its output to be discarded.
+     */
+    private void fail(NormalizationError error, int offset) {
+        if (!recordErrors) {
+            throw components.exception(error, offset);
+        }
+        if (this.error == null) {
+            this.error = error;
+            this.errorOffset = offset;
+        }
+    }
+
+    /**
+     * @param tripletStart the index in {@link #input} of the triplet the octet was decoded from.
+     * @param toLowerCase  whether the octet, if decoded, is lowercased like the rest of the component.
+     */
+    private void appendOctet(char octet, int tripletStart, boolean toLowerCase) {
+        final NormalizationPlan plan = this.plan;
+        if (plan.decodeUnreservedCharacters && !UrlOctet.needsEncoding(octet)) {
+            final char decoded = toLowerCase ? HostCanonicalizer.toLowerCaseAscii(octet) : octet;
+            if (decoded != octet) {
+                changes |= LOWERCASED;
+            }
+            buffer[length++] = decoded;
+            changes |= DECODED_TRIPLETS;
+        } else if (plan.uppercasePercentEncodedTriplets) {
+            final char high = UrlOctet.highHexDigit(octet);
+            final char low = UrlOctet.lowHexDigit(octet);
+            if (input[tripletStart + 1] != high || input[tripletStart + 2] != low) {
+                changes |= UPPERCASED_TRIPLETS;
+            }
+            buffer[length++] = '%';
+            buffer[length++] = high;
+            buffer[length++] = low;
+        } else {
+            System.arraycopy(input, tripletStart, buffer, length, 3);
+            length += 3;
+        }
+    }
+
+    private void appendHost() {
+        final int hostStart = length;
+        appendComponent(components.hostStart, components.hostEnd, plan.lowercaseSchemeAndHost);
+        if (plan.canonicalizeHost) {
+            canonicalizeHost(hostStart);
+        }
+    }
+
+    /**
+     * Replaces the host that starts at hostStart in {@link #buffer} with its canonical form.
+     */
+    private void canonicalizeHost(int hostStart) {
+        if (HostCanonicalizer.isCanonical(buffer, hostStart, length)) {
+            return;
+        }
+        final String original = new String(buffer, hostStart, length - hostStart);
+        final String host = HostCanonicalizer.canonicalize(original);
+        if (!host.equals(original)) {
+            changes |= CANONICALIZED_HOST;
+        }
+        length = hostStart;
+        ensureCapacity(host.length());
+        host.getChars(0, host.length(), buffer, length);
+        length += host.length();
+    }
+
+    /**
+     * Appends the query, including the '?' that introduces it, unless every parameter was removed from it.
+     */
+    private void appendQuery() {
+        final int queryStart = length;
+        append('?');
+        appendComponent(components.queryStart, queryEnd(), false);
+        if (plan.rewriteQuery) {
+            final int rewrittenLength = queryRewriter.rewrite(plan, buffer, queryStart + 1, length);
+            changes |= queryRewriter.changes();
+            length = queryStart + 1;
+            ensureCapacity(rewrittenLength);
+            System.arraycopy(queryRewriter.output(), 0, buffer, length, rewrittenLength);
+            length += rewrittenLength;
+            if (length == queryStart + 1 && plan.removeQueryParameters) {
+                //Every parameter was removed, so remove the now empty query too.
+                length = queryStart;
+                if (!fragmentFollows()) {
+                    trimTrailingWhitespace();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return whether the fragment is kept, and so follows the path and query in the normalized url.
+     */
+    private boolean fragmentFollows() {
+        return components.fragmentStart != UrlComponents.ABSENT && !plan.removeFragment;
+    }
+
+    /**
+     * @return where the path ends in {@link #input}, not counting any whitespace that removing the fragment would
+     * leave at the end of the normalized url.
+     */
+    private int pathEnd() {
+        final UrlComponents c = components;
+        return c.queryStart == UrlComponents.ABSENT ? endBeforeRemovedFragment(c.pathStart, c.pathEnd) : c.pathEnd;
+    }
+
+    /**
+     * @return where the query ends in {@link #input}, not counting any whitespace that removing the fragment would
+     * leave at the end of the normalized url.
+     */
+    private int queryEnd() {
+        return endBeforeRemovedFragment(components.queryStart, components.queryEnd);
+    }
+
+    /**
+     * Whitespace at the end of a url is ignored when the url is read back, so whitespace that only ends up there
+     * because the fragment after it was removed is removed as well; otherwise normalizing again would change the url.
+     */
+    private int endBeforeRemovedFragment(int start, int end) {
+        if (components.fragmentStart == UrlComponents.ABSENT || !plan.removeFragment) {
+            return end;
+        }
+        while (end > start && input[end - 1] <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Same as {@link #endBeforeRemovedFragment(int, int)}, for whitespace that removing every query parameter left at
+     * the end of {@link #buffer}.
+     */
+    private void trimTrailingWhitespace() {
+        while (length > 0 && buffer[length - 1] <= ' ') {
+            length--;
+        }
+    }
+
+    private void appendPort(int port) {
+        int digits = 1;
+        for (int remaining = port / 10; remaining > 0; remaining /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            buffer[i] = (char) ('0' + port % 10);
+            port /= 10;
+        }
+        length += digits;
+    }
+
+    private void appendPath(int start, int end, boolean hasAuthority) {
+        final int pathStart = length;
+        appendComponent(start, end, false);
+        if (plan.removeDotSegments) {
+            final int withDotSegments = length;
+            length = SemanticPreservingNormalizations.removeDotSegments(buffer, pathStart, length);
+            if (length != withDotSegments) {
+                changes |= REMOVED_DOT_SEGMENTS;
+            }
+        }
+        if (plan.removeTrailingSlash && length - pathStart > 1 && buffer[length - 1] == '/') {
+            //All of them, or normalizing again would remove the next one.
+            do {
+                length--;
+            } while (length - pathStart > 1 && buffer[length - 1] == '/');
+            changes |= REMOVED_TRAILING_SLASH;
+        }
+        if (plan.removeDotSegments && !hasAuthority
+                && length - pathStart > 1 && buffer[pathStart] == '/' && buffer[pathStart + 1] == '/') {
+            //Otherwise "x:/.//a" would become "x://a", whose "a" is an authority; the WHATWG URL standard keeps the
+            //"/." too.
+            ensureCapacity(2);
+            System.arraycopy(buffer, pathStart, buffer, pathStart + 2, length - pathStart);
+            buffer[pathStart] = '/';
+            buffer[pathStart + 1] = '.';
+            length += 2;
+        }
+        if (plan.normalizeEmptyPath && length == pathStart && hasAuthority) {
+            append('/');
+            changes |= NORMALIZED_EMPTY_PATH;
+        }
+    }
+
+    private void append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = c;
+    }
+
+    private void ensureCapacity(int additional) {
+        final int required = length + additional;
+        if (required > buffer.length) {
+            final char[] grown = new char[Math.max(required, buffer.length * 2)];
+            System.arraycopy(buffer, 0, grown, 0, length);
+            buffer = grown;
+        }
+    }
+}
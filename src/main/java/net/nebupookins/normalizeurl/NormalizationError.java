@@ -0,0 +1,72 @@
+package net.nebupookins.normalizeurl;
+
+import java.net.MalformedURLException;
+
+/**
+ * The reasons a url can't be normalized, as reported by {@link UrlNormalizer#tryApply(String)}.
+ */
+public enum NormalizationError {
+    /**
+     * The url doesn't start with a scheme followed by ':', e.g. "example.com/".
+     */
+    NO_SCHEME("no scheme", true),
+    /**
+     * An IP literal host is missing its closing ']', e.g. "http://[::1/".
+     */
+    UNTERMINATED_IP_LITERAL("unterminated IP literal", true),
+    /**
+     * An IP literal host is followed by something other than a port, e.g. "http://[::1]x/".
+     */
+    UNEXPECTED_CHARACTER_AFTER_IP_LITERAL("unexpected character after IP literal", true),
+    /**
+     * The port isn't a number, e.g. "http://example.com:http/".
+     */
+    INVALID_PORT("invalid port", true),
+    /**
+     * The port is greater than 65535.
+     */
+    PORT_OUT_OF_RANGE("port out of range", true),
+    /**
+     * A '%' isn't followed by two more characters, e.g. "http://example.com/100%".
+     */
+    TRUNCATED_PERCENT_ENCODED_TRIPLET("truncated percent-encoded triplet", false),
+    /**
+     * A '%' isn't followed by two hex digits, e.g. "http://example.com/%zz".
+     */
+    INVALID_PERCENT_ENCODED_TRIPLET("invalid percent-encoded triplet", false),
+    /**
+     * A normalizer which doesn't report the reasons for its failures failed; see
+     * {@link NormalizationResult#toException()} for the exception it threw.
+     */
+    OTHER("could not be normalized", false);
+
+    private final String description;
+    //Whether to report the error as a MalformedURLException, as java.net.URL would.
+    private final boolean malformedUrl;
+
+    NormalizationError(String description, boolean malformedUrl) {
+        this.description = description;
+        this.malformedUrl = malformedUrl;
+    }
+
+    /**
+     * @return a short description of the error, e.g. "invalid port".
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    String describe(String url, int offset) {
+        return description + " at index " + offset + ": " + url;
+    }
+
+    /**
+     * @return the exception that {@link UrlNormalizer#apply(String)} throws for this error.
+     */
+    RuntimeException toException(String url, int offset) {
+        final String message = describe(url, offset);
+        return malformedUrl
+                ? new IllegalArgumentException(new MalformedURLException(message))
+                : new IllegalArgumentException(message);
+    }
+}
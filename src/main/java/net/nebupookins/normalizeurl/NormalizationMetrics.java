@@ -0,0 +1,98 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the metrics recorded by an {@link InstrumentedUrlNormalizer}.
+ */
+public final class NormalizationMetrics {
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final long count;
+    private final long elapsedNanos;
+    private final Map<NormalizationError, Long> failureCounts;
+    private final Map<Normalization, Long> changedCounts;
+    private final long[] latencies;
+    private final long maxLatencyNanos;
+
+    NormalizationMetrics(
+            long count,
+            long elapsedNanos,
+            EnumMap<NormalizationError, Long> failureCounts,
+            EnumMap<Normalization, Long> changedCounts,
+            long[] latencies,
+            long maxLatencyNanos) {
+        this.count = count;
+        this.elapsedNanos = elapsedNanos;
+        this.failureCounts = Collections.unmodifiableMap(failureCounts);
+        this.changedCounts = Collections.unmodifiableMap(changedCounts);
+        this.latencies = latencies;
+        this.maxLatencyNanos = maxLatencyNanos;
+    }
+
+    /**
+     * @return the number of urls that normalization was attempted on, whether or not it succeeded.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of urls normalized per second, on average, since the normalizer was created.
+     */
+    public double getThroughputPerSecond() {
+        return elapsedNanos == 0 ? 0 : count * NANOS_PER_SECOND / elapsedNanos;
+    }
+
+    /**
+     * @return the number of urls that could not be normalized.
+     */
+    public long getFailureCount() {
+        long failureCount = 0;
+        for (long causeCount : failureCounts.values()) {
+            failureCount += causeCount;
+        }
+        return failureCount;
+    }
+
+    /**
+     * @return the number of urls that could not be normalized, by the reason they couldn't be, as reported by
+     * {@link UrlNormalizer#tryApply(String)}. Reasons that no url failed for are left out.
+     */
+    public Map<NormalizationError, Long> getFailureCounts() {
+        return failureCounts;
+    }
+
+    /**
+     * @return for each normalization, the number of urls that it changed. Only recorded for the normalizers returned
+     * by {@link UrlNormalizer}'s factory methods and builder; empty for other normalizers.
+     */
+    public Map<Normalization, Long> getChangedCounts() {
+        return changedCounts;
+    }
+
+    /**
+     * @param percentile between 0 and 100, e.g. 99.9.
+     * @return the latency, in nanoseconds, that the given percentage of normalizations took no longer than, to within
+     * about 3%.
+     */
+    public long getLatencyNanos(double percentile) {
+        return LatencyHistogram.valueAtPercentile(latencies, percentile);
+    }
+
+    public double getMeanLatencyNanos() {
+        return LatencyHistogram.mean(latencies);
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return count + " urls, " + getFailureCount() + " failed, " + Math.round(getThroughputPerSecond()) + "/s, p50 "
+                + getLatencyNanos(50) + "ns, p99 " + getLatencyNanos(99) + "ns, max " + maxLatencyNanos + "ns";
+    }
+}
@@ -0,0 +1,37 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Map;
+
+/**
+ * The metrics of an {@link InstrumentedUrlNormalizer}, as exposed through JMX. Each attribute is read from a fresh
+ * {@link NormalizationMetrics} snapshot.
+ *
+ * @see InstrumentedUrlNormalizer#registerMBean(String)
+ */
+public interface NormalizationMetricsMXBean {
+    long getCount();
+
+    double getThroughputPerSecond();
+
+    long getFailureCount();
+
+    /**
+     * @return the number of urls that could not be normalized, by the name of the {@link NormalizationError} reported.
+     */
+    Map<String, Long> getFailureCounts();
+
+    /**
+     * @return the number of urls changed by each normalization, by the normalization's name.
+     */
+    Map<String, Long> getChangedCounts();
+
+    long getMedianLatencyNanos();
+
+    long get99thPercentileLatencyNanos();
+
+    long get999thPercentileLatencyNanos();
+
+    double getMeanLatencyNanos();
+
+    long getMaxLatencyNanos();
+}
@@ -0,0 +1,74 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.*;
+
+/**
+ * A selection of {@link Normalization}s, compiled down to the flags that {@link NormalizationEngine} checks while it
+ * makes its single pass over a url. Enabling more normalizations makes the pass do more work per component, but
+ * never adds passes.
+ */
+final class NormalizationPlan {
+    static final NormalizationPlan SEMANTIC_PRESERVING = new NormalizationPlan(EnumSet.of(
+            Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS,
+            Normalization.LOWERCASE_SCHEME_AND_HOST,
+            Normalization.DECODE_UNRESERVED_CHARACTERS,
+            Normalization.REMOVE_DOT_SEGMENTS,
+            Normalization.NORMALIZE_EMPTY_PATH,
+            Normalization.REMOVE_DEFAULT_PORT), Collections.emptySet());
+    /**
+     * Only splits urls into components and joins them again.
+     */
+    static final NormalizationPlan NONE =
+            new NormalizationPlan(EnumSet.noneOf(Normalization.class), Collections.emptySet());
+
+    final boolean uppercasePercentEncodedTriplets;
+    final boolean lowercaseSchemeAndHost;
+    final boolean decodeUnreservedCharacters;
+    final boolean removeDotSegments;
+    final boolean normalizeEmptyPath;
+    final boolean removeDefaultPort;
+    final boolean removeFragment;
+    final boolean removeTrailingSlash;
+    final boolean sortQueryParameters;
+    final boolean removeQueryParameters;
+    final boolean canonicalizeHost;
+    final boolean removeDuplicateQueryParameters;
+    final boolean repairInvalidCharacters;
+    /**
+     * Whether triplets need to be parsed at all; if not, they are copied as is.
+     */
+    final boolean parsePercentEncodedTriplets;
+    /**
+     * Whether the query needs to be split into parameters.
+     */
+    final boolean rewriteQuery;
+    final NameTrie removedQueryParameterNames;
+    final SchemeRegistry schemes;
+
+    NormalizationPlan(Set<Normalization> normalizations, Set<String> removedQueryParameters) {
+        this(normalizations, removedQueryParameters, SchemeRegistry.DEFAULT);
+    }
+
+    NormalizationPlan(Set<Normalization> normalizations, Set<String> removedQueryParameters, SchemeRegistry schemes) {
+        this.uppercasePercentEncodedTriplets = normalizations.contains(Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS);
+        this.lowercaseSchemeAndHost = normalizations.contains(Normalization.LOWERCASE_SCHEME_AND_HOST);
+        this.decodeUnreservedCharacters = normalizations.contains(Normalization.DECODE_UNRESERVED_CHARACTERS);
+        this.removeDotSegments = normalizations.contains(Normalization.REMOVE_DOT_SEGMENTS);
+        this.normalizeEmptyPath = normalizations.contains(Normalization.NORMALIZE_EMPTY_PATH);
+        this.removeDefaultPort = normalizations.contains(Normalization.REMOVE_DEFAULT_PORT);
+        this.removeFragment = normalizations.contains(Normalization.REMOVE_FRAGMENT);
+        this.removeTrailingSlash = normalizations.contains(Normalization.REMOVE_TRAILING_SLASH);
+        this.sortQueryParameters = normalizations.contains(Normalization.SORT_QUERY_PARAMETERS);
+        this.removeQueryParameters = normalizations.contains(Normalization.REMOVE_QUERY_PARAMETERS)
+                && !removedQueryParameters.isEmpty();
+        this.canonicalizeHost = normalizations.contains(Normalization.CANONICALIZE_HOST);
+        this.removeDuplicateQueryParameters =
+                normalizations.contains(Normalization.REMOVE_DUPLICATE_QUERY_PARAMETERS);
+        this.repairInvalidCharacters = normalizations.contains(Normalization.REPAIR_INVALID_CHARACTERS);
+        this.parsePercentEncodedTriplets =
+                uppercasePercentEncodedTriplets || decodeUnreservedCharacters || repairInvalidCharacters;
+        this.rewriteQuery = sortQueryParameters || this.removeQueryParameters || removeDuplicateQueryParameters;
+        this.removedQueryParameterNames = new NameTrie(removedQueryParameters);
+        this.schemes = schemes;
+    }
+}
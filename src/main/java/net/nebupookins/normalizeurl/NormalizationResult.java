@@ -0,0 +1,102 @@
+package net.nebupookins.normalizeurl;
+
+/**
+ * The outcome of {@link UrlNormalizer#tryApply(String)}: either the normalized form of a url, or the reason it
+ * couldn't be normalized and where in the url the problem is. Unlike an exception, a failed result costs no more to
+ * create than a successful one, since there is no stack trace to capture; an exception is only created if
+ * {@link #toException()} is called.
+ */
+public final class NormalizationResult {
+    private final String url;
+    private final String normalized;
+    private final NormalizationError error;
+    private final int errorOffset;
+    //Created on demand; null until then, unless the normalizer that failed threw it.
+    private RuntimeException exception;
+
+    private NormalizationResult(
+            String url, String normalized, NormalizationError error, int errorOffset, RuntimeException exception) {
+        this.url = url;
+        this.normalized = normalized;
+        this.error = error;
+        this.errorOffset = errorOffset;
+        this.exception = exception;
+    }
+
+    static NormalizationResult success(String normalized) {
+        return new NormalizationResult(null, normalized, null, -1, null);
+    }
+
+    /**
+     * @param errorOffset the index in url of the problem.
+     */
+    static NormalizationResult failure(String url, NormalizationError error, int errorOffset) {
+        return new NormalizationResult(url, null, error, errorOffset, null);
+    }
+
+    /**
+     * @return a failed result for a normalizer which doesn't report the reasons for its failures, and threw exception.
+     */
+    static NormalizationResult failure(String url, RuntimeException exception) {
+        return new NormalizationResult(url, null, NormalizationError.OTHER, -1, exception);
+    }
+
+    /**
+     * @return true if the url was normalized successfully.
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return the normalized form of the url, or null if it could not be normalized.
+     */
+    public String get() {
+        return normalized;
+    }
+
+    /**
+     * @return the normalized form of the url.
+     * @throws IllegalArgumentException or whatever else the normalizer threw, if the url could not be normalized; the
+     *                                  same as {@link UrlNormalizer#apply(String)} would have thrown.
+     */
+    public String getOrThrow() {
+        if (error != null) {
+            throw toException();
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the reason the url could not be normalized, or null if it was normalized successfully.
+     */
+    public NormalizationError getError() {
+        return error;
+    }
+
+    /**
+     * @return the index in the url of the problem that prevented it from being normalized, or -1 if it was normalized
+     * successfully or the index is not known.
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+
+    /**
+     * @return the exception that {@link UrlNormalizer#apply(String)} throws for this url, created the first time
+     * this is called; null if the url was normalized successfully.
+     */
+    public RuntimeException toException() {
+        RuntimeException exception = this.exception;
+        if (exception == null && error != null) {
+            exception = error.toException(url, errorOffset);
+            this.exception = exception;
+        }
+        return exception;
+    }
+
+    @Override
+    public String toString() {
+        return error == null ? normalized : error.describe(url, errorOffset);
+    }
+}
@@ -0,0 +1,152 @@
+package net.nebupookins.normalizeurl;
+
+import java.net.MalformedURLException;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+/**
+ * A url split into its components, each of which is only normalized the first time it's asked for. Callers that only
+ * need some of the components, such as the host, don't pay for normalizing the others, or for building the whole
+ * normalized url and parsing it again.
+ *
+ * <p>Instances are immutable as far as callers can tell, and safe to share between threads. A component might get
+ * normalized more than once if several threads ask for it at the same time, but they all get the same result.</p>
+ *
+ * @see UrlNormalizer#parse(String)
+ */
+public final class NormalizedUrl {
+    private final NormalizationPlan plan;
+    private final char[] url;
+    private final UrlComponents components = new UrlComponents();
+
+    //The components that have been normalized so far; null until then.
+    private String scheme;
+    private Optional<String> userInfo;
+    private Optional<String> host;
+    private String path;
+    private Optional<String> query;
+    private Optional<String> fragment;
+    private String string;
+
+    /**
+     * @throws IllegalArgumentException if the url can't be split into components.
+     */
+    NormalizedUrl(NormalizationPlan plan, String url) {
+        this.plan = plan;
+        this.url = url.toCharArray();
+        if (!components.parse(this.url, 0, this.url.length)) {
+            throw new IllegalArgumentException(new MalformedURLException(components.describeError()));
+        }
+    }
+
+    private static NormalizationEngine engine() {
+        return PlannedUrlNormalizer.engine();
+    }
+
+    /**
+     * @return the scheme, e.g. "http".
+     */
+    public String getScheme() {
+        String scheme = this.scheme;
+        if (scheme == null) {
+            scheme = engine().normalizeScheme(plan, url, components);
+            this.scheme = scheme;
+        }
+        return scheme;
+    }
+
+    /**
+     * @return the user info, e.g. "user:password", if the url has any.
+     */
+    public Optional<String> getUserInfo() {
+        Optional<String> userInfo = this.userInfo;
+        if (userInfo == null) {
+            userInfo = Optional.ofNullable(engine().normalizeUserInfo(plan, url, components));
+            this.userInfo = userInfo;
+        }
+        return userInfo;
+    }
+
+    /**
+     * @return the host, e.g. "example.com", if the url has an authority. The host of a url with an authority may be
+     * empty, as in "file:///tmp".
+     */
+    public Optional<String> getHost() {
+        Optional<String> host = this.host;
+        if (host == null) {
+            host = Optional.ofNullable(engine().normalizeHost(plan, url, components));
+            this.host = host;
+        }
+        return host;
+    }
+
+    /**
+     * @return the port, if the url has one and it's not removed as the default one.
+     */
+    public OptionalInt getPort() {
+        final int port = NormalizationEngine.normalizePort(plan, components);
+        return port == UrlComponents.ABSENT ? OptionalInt.empty() : OptionalInt.of(port);
+    }
+
+    /**
+     * @return the path, e.g. "/a/b"; may be empty.
+     */
+    public String getPath() {
+        String path = this.path;
+        if (path == null) {
+            path = engine().normalizePath(plan, url, components);
+            this.path = path;
+        }
+        return path;
+    }
+
+    /**
+     * @return the query, without the '?' that introduces it, if the url has one.
+     */
+    public Optional<String> getQuery() {
+        Optional<String> query = this.query;
+        if (query == null) {
+            query = Optional.ofNullable(engine().normalizeQuery(plan, url, components));
+            this.query = query;
+        }
+        return query;
+    }
+
+    /**
+     * @return the fragment, without the '#' that introduces it, if the url has one.
+     */
+    public Optional<String> getFragment() {
+        Optional<String> fragment = this.fragment;
+        if (fragment == null) {
+            fragment = Optional.ofNullable(engine().normalizeFragment(plan, url, components));
+            this.fragment = fragment;
+        }
+        return fragment;
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (this == that) {
+            return true;
+        }
+        return that instanceof NormalizedUrl && toString().equals(that.toString());
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+
+    /**
+     * @return the whole normalized url, the same as {@link UrlNormalizer#apply(String)} returns.
+     */
+    @Override
+    public String toString() {
+        String string = this.string;
+        if (string == null) {
+            string = engine().normalize(plan, url, components);
+            this.string = string;
+        }
+        return string;
+    }
+}
@@ -0,0 +1,145 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A map from urls, in their normalized form, to long values, such as ids or counts. It's stored the same way as a
+ * {@link NormalizedUrlSet}, with a further 11 to 21 bytes per url for the value, and is just as safe to share between
+ * threads.
+ */
+public final class NormalizedUrlLongMap {
+    private final UrlNormalizer normalizer;
+    private final Utf8KeyTable[] segments;
+
+    /**
+     * @param normalizer   the normalizer to apply to urls before they're added or looked up.
+     * @param expectedSize the number of urls the map is expected to hold.
+     */
+    public NormalizedUrlLongMap(UrlNormalizer normalizer, long expectedSize) {
+        this.normalizer = normalizer;
+        this.segments = Utf8KeyTable.segments(expectedSize, true);
+    }
+
+    /**
+     * @return the value of the normalized form of the url, or defaultValue if it isn't in the map.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public long getOrDefault(String url, long defaultValue) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            final int slot = segment.find(key);
+            return slot >= 0 ? segment.getValue(slot) : defaultValue;
+        }
+    }
+
+    /**
+     * @return true if the normalized form of the url is in the map.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public boolean containsKey(String url) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            return segment.find(key) >= 0;
+        }
+    }
+
+    /**
+     * Sets the value of the normalized form of the url.
+     *
+     * @return true if the normalized form of the url wasn't in the map before.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public boolean put(String url, long value) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            int slot = segment.find(key);
+            final boolean absent = slot < 0;
+            if (absent) {
+                slot = segment.insert(slot, key);
+            }
+            segment.setValue(slot, value);
+            return absent;
+        }
+    }
+
+    /**
+     * Adds the normalized form of the url with the given value, unless it's already in the map.
+     *
+     * @return true if the normalized form of the url wasn't in the map, and now is.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public boolean putIfAbsent(String url, long value) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            final int slot = segment.find(key);
+            if (slot >= 0) {
+                return false;
+            }
+            segment.setValue(segment.insert(slot, key), value);
+            return true;
+        }
+    }
+
+    /**
+     * Adds delta to the value of the normalized form of the url, taking the value of a url not in the map to be 0,
+     * e.g. to count how many times equivalent urls were seen.
+     *
+     * @return the new value.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public long addTo(String url, long delta) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            int slot = segment.find(key);
+            if (slot < 0) {
+                slot = segment.insert(slot, key);
+            }
+            final long value = segment.getValue(slot) + delta;
+            segment.setValue(slot, value);
+            return value;
+        }
+    }
+
+    /**
+     * @return the number of normalized urls in the map.
+     */
+    public long size() {
+        long size = 0;
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes taken up by the map's arrays, which is nearly all of the memory it takes up.
+     */
+    public long getMemoryUsage() {
+        long memoryUsage = 0;
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                memoryUsage += segment.getMemoryUsage();
+            }
+        }
+        return memoryUsage;
+    }
+
+    /**
+     * Calls action with each normalized url in the map and its value, in no particular order. Each segment of the map
+     * is locked while its urls are visited, so action must not add urls to the map.
+     */
+    public void forEach(ObjLongConsumer<? super String> action) {
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                segment.forEach(action::accept);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.function.Consumer;
+
+/**
+ * A set of urls, which holds each url in its normalized form, so that it answers "has an equivalent url been seen
+ * before?". Each url is normalized and added in one pass, without creating a String for its normalized form.
+ *
+ * <p>The normalized urls are stored as UTF-8 in large byte arrays, and indexed by a hash table made of a single long
+ * per slot, so a url takes up its UTF-8 length plus about 12 to 23 bytes, rather than the 100 or more bytes
+ * of a String in a {@link java.util.HashSet}. The set holds no objects per url, so however many urls it holds, it
+ * adds nothing to the work of the garbage collector. Presizing it with the number of urls expected avoids having to
+ * grow it along the way.</p>
+ *
+ * <p>Instances are safe to share between any number of threads. Urls are spread across several independently locked
+ * segments, and only the lookup itself is done under the lock, not the normalization. Urls can't be removed.</p>
+ */
+public final class NormalizedUrlSet {
+    private final UrlNormalizer normalizer;
+    private final Utf8KeyTable[] segments;
+
+    /**
+     * @param normalizer   the normalizer to apply to urls before they're added or looked up.
+     * @param expectedSize the number of urls the set is expected to hold.
+     */
+    public NormalizedUrlSet(UrlNormalizer normalizer, long expectedSize) {
+        this.normalizer = normalizer;
+        this.segments = Utf8KeyTable.segments(expectedSize, false);
+    }
+
+    /**
+     * Adds the normalized form of the url, unless it's already in the set.
+     *
+     * @return true if the normalized form of the url wasn't in the set, and now is.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public boolean addIfAbsent(String url) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            final int slot = segment.find(key);
+            if (slot >= 0) {
+                return false;
+            }
+            segment.insert(slot, key);
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the normalized form of the url is in the set.
+     * @throws IllegalArgumentException if the url can't be normalized.
+     */
+    public boolean contains(String url) {
+        final Utf8KeyTable.Key key = Utf8KeyTable.key(normalizer, url);
+        final Utf8KeyTable segment = Utf8KeyTable.segment(segments, key);
+        synchronized (segment) {
+            return segment.find(key) >= 0;
+        }
+    }
+
+    /**
+     * @return the number of normalized urls in the set.
+     */
+    public long size() {
+        long size = 0;
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes taken up by the set's arrays, which is nearly all of the memory it takes up.
+     */
+    public long getMemoryUsage() {
+        long memoryUsage = 0;
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                memoryUsage += segment.getMemoryUsage();
+            }
+        }
+        return memoryUsage;
+    }
+
+    /**
+     * Calls action with each normalized url in the set, in no particular order. Each segment of the set is locked
+     * while its urls are visited, so action must not add urls to the set.
+     */
+    public void forEach(Consumer<? super String> action) {
+        for (Utf8KeyTable segment : segments) {
+            synchronized (segment) {
+                segment.forEach((url, value) -> action.accept(url));
+            }
+        }
+    }
+}
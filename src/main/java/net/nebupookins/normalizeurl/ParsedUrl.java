@@ -1,7 +1,6 @@
 package net.nebupookins.normalizeurl;
 
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.function.Function;
@@ -16,14 +15,17 @@ class ParsedUrl {
     final Optional<String> ref;
 
     ParsedUrl(final String url) throws MalformedURLException {
-        URL parsedUrl = new URL(url);
-        this.protocol = parsedUrl.getProtocol();
-        this.userInfo = Optional.ofNullable(parsedUrl.getUserInfo());
-        this.host = Optional.ofNullable(parsedUrl.getHost());
-        this.port = parsedUrl.getPort() == -1 ? OptionalInt.empty() : OptionalInt.of(parsedUrl.getPort());
-        this.path = parsedUrl.getPath();
-        this.query = Optional.ofNullable(parsedUrl.getQuery());
-        this.ref = Optional.ofNullable(parsedUrl.getRef());
+        final UrlComponents components = new UrlComponents();
+        if (!components.parse(url.toCharArray(), 0, url.length())) {
+            throw new MalformedURLException(components.describeError());
+        }
+        this.protocol = components.substring(components.start, components.schemeEnd);
+        this.userInfo = Optional.ofNullable(components.substring(components.userInfoStart, components.userInfoEnd));
+        this.host = Optional.ofNullable(components.substring(components.hostStart, components.hostEnd));
+        this.port = components.port == UrlComponents.ABSENT ? OptionalInt.empty() : OptionalInt.of(components.port);
+        this.path = components.substring(components.pathStart, components.pathEnd);
+        this.query = Optional.ofNullable(components.substring(components.queryStart, components.queryEnd));
+        this.ref = Optional.ofNullable(components.substring(components.fragmentStart, components.fragmentEnd));
     }
 
     private ParsedUrl(
@@ -0,0 +1,67 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A UrlNormalizer that performs the normalizations selected by a {@link NormalizationPlan}, in a single pass, using a
+ * {@link NormalizationEngine} confined to the calling thread. Instances are immutable and safe to share between
+ * threads.
+ */
+class PlannedUrlNormalizer implements UrlNormalizer {
+    private static final ThreadLocal<NormalizationEngine> ENGINE = ThreadLocal.withInitial(NormalizationEngine::new);
+    //A second engine, for when two urls are normalized side by side.
+    private static final ThreadLocal<NormalizationEngine> PEER_ENGINE = ThreadLocal.withInitial(NormalizationEngine::new);
+
+    final NormalizationPlan plan;
+
+    PlannedUrlNormalizer(NormalizationPlan plan) {
+        this.plan = plan;
+    }
+
+    /**
+     * @return the engine confined to the calling thread.
+     */
+    static NormalizationEngine engine() {
+        return ENGINE.get();
+    }
+
+    @Override
+    public String apply(String url) {
+        return ENGINE.get().normalize(plan, url);
+    }
+
+    @Override
+    public NormalizationResult tryApply(String url) {
+        return ENGINE.get().tryNormalize(plan, url);
+    }
+
+    @Override
+    public int apply(byte[] url, int offset, int length, byte[] dest, int destOffset) {
+        return ENGINE.get().normalize(plan, url, offset, length, dest, destOffset);
+    }
+
+    @Override
+    public int apply(ByteBuffer url, ByteBuffer dest) {
+        return ENGINE.get().normalize(plan, url, dest);
+    }
+
+    @Override
+    public NormalizedUrl parse(String url) {
+        return new NormalizedUrl(plan, url);
+    }
+
+    @Override
+    public boolean equivalent(String url1, String url2) {
+        return NormalizationEngine.equivalent(plan, ENGINE.get(), url1, PEER_ENGINE.get(), url2);
+    }
+
+    @Override
+    public void fingerprint128(String url, long[] dest) {
+        ENGINE.get().fingerprint(plan, url, dest);
+    }
+
+    @Override
+    public long fingerprint64(String url) {
+        return ENGINE.get().fingerprint64(plan, url);
+    }
+}
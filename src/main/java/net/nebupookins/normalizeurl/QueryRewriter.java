@@ -0,0 +1,270 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Arrays;
+
+/**
+ * Removes, deduplicates and reorders the parameters of an already normalized query. Each parameter kept is copied
+ * once, re-encoded canonically, into a scratch array, and is from then on tracked as offsets into it; the rewritten
+ * query is then assembled from those offsets into a second scratch array. The scratch arrays are reused from one query
+ * to the next, so no per-parameter objects are created and the work stays linear, apart from the sort, in the number
+ * of parameters.
+ *
+ * <p>Canonical re-encoding percent-encodes, as UTF-8, every character that may not appear literally in a query, so
+ * that e.g. "?q=&eacute;" and "?q=%C3%A9" are rewritten alike. Only queries being rewritten are re-encoded.</p>
+ */
+final class QueryRewriter {
+    private static final int SORT_INSERTION_THRESHOLD = 12;
+    //A non-ASCII char takes up at most 3 UTF-8 bytes, or 4 for a surrogate pair, i.e. 12 chars as triplets.
+    private static final int MAX_ENCODED_CHAR_LENGTH = 12;
+
+    private int[] parameterStarts = new int[16];
+    private int[] parameterEnds = new int[16];
+    private int[] nameEnds = new int[16];
+    private int[] order = new int[16];
+    private int[] sortScratch = new int[16];
+    private int[] hashSlots = new int[32];
+    private char[] parameters = new char[128];
+    private char[] output = new char[128];
+    private final byte[] utf8 = new byte[4];
+    private int changes;
+
+    /**
+     * Rewrites the query between start and end of buffer, not including the '?', according to the plan.
+     *
+     * @return the length of the rewritten query, which is then in {@link #output()}.
+     */
+    int rewrite(NormalizationPlan plan, char[] buffer, int start, int end) {
+        changes = 0;
+        int parameterCount = split(plan, buffer, start, end);
+        if (plan.removeDuplicateQueryParameters) {
+            parameterCount = removeDuplicates(parameterCount);
+        }
+        if (plan.sortQueryParameters) {
+            sortByName(0, parameterCount);
+            for (int i = 1; i < parameterCount; i++) {
+                if (order[i] < order[i - 1]) {
+                    changes |= NormalizationEngine.bit(Normalization.SORT_QUERY_PARAMETERS);
+                    break;
+                }
+            }
+        }
+        int length = 0;
+        for (int i = 0; i < parameterCount; i++) {
+            final int parameter = order[i];
+            final int parameterLength = parameterEnds[parameter] - parameterStarts[parameter];
+            ensureOutputCapacity(length + parameterLength + 1);
+            if (i > 0) {
+                output[length++] = '&';
+            }
+            System.arraycopy(parameters, parameterStarts[parameter], output, length, parameterLength);
+            length += parameterLength;
+        }
+        return length;
+    }
+
+    /**
+     * @return the normalizations that changed the query last rewritten, as a bit set like
+     * {@link NormalizationEngine#changedNormalizations()}.
+     */
+    int changes() {
+        return changes;
+    }
+
+    /**
+     * @return the rewritten query; only the part reported by {@link #rewrite} is meaningful.
+     */
+    char[] output() {
+        return output;
+    }
+
+    /**
+     * Copies each parameter that the plan keeps to {@link #parameters}, recording their offsets in their original
+     * order.
+     *
+     * @return the number of parameters kept.
+     */
+    private int split(NormalizationPlan plan, char[] buffer, int start, int end) {
+        int count = 0;
+        int written = 0;
+        int parameterStart = 0;
+        int nameEnd = -1;
+        for (int i = start; i <= end; i++) {
+            final char c = i == end ? '&' : buffer[i];
+            if (c == '&') {
+                if (nameEnd == -1) {
+                    nameEnd = written;
+                }
+                if (plan.removeQueryParameters
+                        && plan.removedQueryParameterNames.contains(parameters, parameterStart, nameEnd)) {
+                    written = parameterStart;
+                    changes |= NormalizationEngine.bit(Normalization.REMOVE_QUERY_PARAMETERS);
+                } else {
+                    ensureParameterCapacity(count + 1);
+                    parameterStarts[count] = parameterStart;
+                    parameterEnds[count] = written;
+                    nameEnds[count] = nameEnd;
+                    order[count] = count;
+                    count++;
+                }
+                parameterStart = written;
+                nameEnd = -1;
+                continue;
+            }
+            if (parameters.length - written < MAX_ENCODED_CHAR_LENGTH) {
+                parameters = Arrays.copyOf(parameters, Math.max(parameters.length * 2, written + (end - i) * 3));
+            }
+            if (c == '=' && nameEnd == -1) {
+                nameEnd = written;
+                parameters[written++] = c;
+            } else if (c == '%' && i + 2 < end && UrlOctet.isHexDigit(buffer[i + 1])
+                    && UrlOctet.isHexDigit(buffer[i + 2])) {
+                parameters[written++] = c;
+                parameters[written++] = buffer[++i];
+                parameters[written++] = buffer[++i];
+            } else if (c != '%' && UrlOctet.isAllowedInQuery(c)) {
+                parameters[written++] = c;
+            } else {
+                final int charLength = Character.isHighSurrogate(c) && i + 1 < end
+                        && Character.isLowSurrogate(buffer[i + 1]) ? 2 : 1;
+                final int byteLength = Utf8.encode(buffer, i, charLength, utf8, 0);
+                for (int b = 0; b < byteLength; b++) {
+                    final int octet = utf8[b] & 0xFF;
+                    parameters[written++] = '%';
+                    parameters[written++] = UrlOctet.highHexDigit(octet);
+                    parameters[written++] = UrlOctet.lowHexDigit(octet);
+                }
+                i += charLength - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes parameters that are identical, both name and value, to an earlier one from {@link #order}, keeping their
+     * original order, by way of an open-addressing hash table of parameters.
+     *
+     * @return the number of parameters left.
+     */
+    private int removeDuplicates(int parameterCount) {
+        final int tableSize = Integer.highestOneBit(Math.max(parameterCount, 1)) * 4;
+        if (hashSlots.length < tableSize) {
+            hashSlots = new int[tableSize];
+        } else {
+            Arrays.fill(hashSlots, 0, tableSize, 0);
+        }
+        final int mask = tableSize - 1;
+        int kept = 0;
+        for (int i = 0; i < parameterCount; i++) {
+            final int parameter = order[i];
+            int slot = hash(parameter) & mask;
+            boolean isDuplicate = false;
+            //Slots hold the index of a parameter plus one, so that 0 means empty.
+            while (hashSlots[slot] != 0) {
+                if (isSameParameter(hashSlots[slot] - 1, parameter)) {
+                    isDuplicate = true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (!isDuplicate) {
+                hashSlots[slot] = parameter + 1;
+                order[kept++] = parameter;
+            }
+        }
+        if (kept < parameterCount) {
+            changes |= NormalizationEngine.bit(Normalization.REMOVE_DUPLICATE_QUERY_PARAMETERS);
+        }
+        return kept;
+    }
+
+    private int hash(int parameter) {
+        int hash = 0;
+        for (int i = parameterStarts[parameter]; i < parameterEnds[parameter]; i++) {
+            hash = 31 * hash + parameters[i];
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    private boolean isSameParameter(int left, int right) {
+        final int length = parameterEnds[left] - parameterStarts[left];
+        if (parameterEnds[right] - parameterStarts[right] != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (parameters[parameterStarts[left] + i] != parameters[parameterStarts[right] + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stable merge sort of {@link #order}[from, to) by parameter name, which switches to insertion sort for short
+     * ranges.
+     */
+    private void sortByName(int from, int to) {
+        if (to - from <= SORT_INSERTION_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int parameter = order[i];
+                int j = i - 1;
+                while (j >= from && compareNames(order[j], parameter) > 0) {
+                    order[j + 1] = order[j];
+                    j--;
+                }
+                order[j + 1] = parameter;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sortByName(from, middle);
+        sortByName(middle, to);
+        if (compareNames(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, sortScratch, from, middle - from);
+        int left = from;
+        int right = middle;
+        int merged = from;
+        while (left < middle && right < to) {
+            //Ties take the left one, which keeps the sort stable.
+            if (compareNames(order[right], sortScratch[left]) < 0) {
+                order[merged++] = order[right++];
+            } else {
+                order[merged++] = sortScratch[left++];
+            }
+        }
+        System.arraycopy(sortScratch, left, order, merged, middle - left);
+    }
+
+    private int compareNames(int left, int right) {
+        final int leftStart = parameterStarts[left];
+        final int rightStart = parameterStarts[right];
+        final int leftLength = nameEnds[left] - leftStart;
+        final int rightLength = nameEnds[right] - rightStart;
+        final int commonLength = Math.min(leftLength, rightLength);
+        for (int i = 0; i < commonLength; i++) {
+            final int difference = parameters[leftStart + i] - parameters[rightStart + i];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    private void ensureParameterCapacity(int required) {
+        if (required > parameterStarts.length) {
+            final int capacity = Math.max(required, parameterStarts.length * 2);
+            parameterStarts = Arrays.copyOf(parameterStarts, capacity);
+            parameterEnds = Arrays.copyOf(parameterEnds, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+            order = Arrays.copyOf(order, capacity);
+            sortScratch = new int[capacity];
+        }
+    }
+
+    private void ensureOutputCapacity(int required) {
+        if (required > output.length) {
+            output = Arrays.copyOf(output, Math.max(required, output.length * 2));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable map from schemes to their default ports, compiled into a hash table so that the default port of the
+ * scheme of a url in a char array can be looked up without creating a String for the scheme. The table is seeded so
+ * that, for the handful of schemes it usually holds, every scheme gets a slot of its own, and a lookup is one hash and
+ * one comparison. Schemes are matched regardless of case, as RFC 3986 says they should be.
+ *
+ * <p>The table is only consulted for urls that have a port, so urls without one pay nothing for it.</p>
+ */
+final class SchemeRegistry {
+    /**
+     * The schemes whose default ports are known to every normalizer, unless overridden.
+     */
+    static final Map<String, Integer> DEFAULT_PORTS;
+    static final SchemeRegistry DEFAULT;
+
+    //How many seeds to try at each capacity, and how many times to double the capacity, before settling for a table
+    //in which some schemes are found past the slot they hash to.
+    private static final int SEEDS_PER_CAPACITY = 64;
+    private static final int MAX_DOUBLINGS = 2;
+
+    static {
+        final Map<String, Integer> defaultPorts = new LinkedHashMap<>();
+        defaultPorts.put("http", 80);
+        defaultPorts.put("https", 443);
+        defaultPorts.put("ws", 80);
+        defaultPorts.put("wss", 443);
+        defaultPorts.put("ftp", 21);
+        DEFAULT_PORTS = Collections.unmodifiableMap(defaultPorts);
+        DEFAULT = new SchemeRegistry(DEFAULT_PORTS);
+    }
+
+    //Indexed by the hash of the scheme, or the next free slot after it; null where there is no scheme.
+    private final char[][] schemes;
+    private final int[] ports;
+    private final int seed;
+    //The furthest any scheme is from the slot it hashes to; 0 when every scheme has a slot of its own.
+    private final int maxProbes;
+
+    /**
+     * @param defaultPorts the default port of each scheme; schemes must be lowercase.
+     */
+    SchemeRegistry(Map<String, Integer> defaultPorts) {
+        int capacity = Integer.highestOneBit(Math.max(4, defaultPorts.size())) * 2;
+        int seed = 0;
+        //Look for a seed that doesn't send two schemes to the same slot, with more slots if none turns up quickly.
+        //No seed may turn up at all, e.g. for hundreds of schemes, so the search is bounded.
+        for (int doublings = 0; !isPerfect(defaultPorts, capacity, seed); ) {
+            if (++seed % SEEDS_PER_CAPACITY == 0) {
+                if (doublings == MAX_DOUBLINGS) {
+                    break;
+                }
+                capacity *= 2;
+                doublings++;
+            }
+        }
+        this.seed = seed;
+        this.schemes = new char[capacity][];
+        this.ports = new int[capacity];
+        int maxProbes = 0;
+        for (Map.Entry<String, Integer> entry : defaultPorts.entrySet()) {
+            final char[] scheme = entry.getKey().toCharArray();
+            int slot = hash(scheme, 0, scheme.length, seed) & (capacity - 1);
+            int probes = 0;
+            while (schemes[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+                probes++;
+            }
+            schemes[slot] = scheme;
+            ports[slot] = entry.getValue();
+            maxProbes = Math.max(maxProbes, probes);
+        }
+        this.maxProbes = maxProbes;
+    }
+
+    private static boolean isPerfect(Map<String, Integer> defaultPorts, int capacity, int seed) {
+        final boolean[] taken = new boolean[capacity];
+        for (String scheme : defaultPorts.keySet()) {
+            final int slot = hash(scheme.toCharArray(), 0, scheme.length(), seed) & (capacity - 1);
+            if (taken[slot]) {
+                return false;
+            }
+            taken[slot] = true;
+        }
+        return true;
+    }
+
+    private static int hash(char[] chars, int start, int end, int seed) {
+        //The seed goes through a multiplication with every char, so that schemes that collide under one seed, like
+        //"c+" and "ai" do under 31 * hash + c, don't collide under every seed.
+        int hash = seed;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ HostCanonicalizer.toLowerCaseAscii(chars[i])) * 0x9E3779B9;
+        }
+        return hash ^ hash >>> 16;
+    }
+
+    /**
+     * @return the default port of the scheme between start and end of chars, or {@link UrlComponents#ABSENT} if it
+     * has none.
+     */
+    int defaultPort(char[] chars, int start, int end) {
+        int slot = hash(chars, start, end, seed) & (schemes.length - 1);
+        for (int probes = 0; probes <= maxProbes; probes++) {
+            final char[] scheme = schemes[slot];
+            if (scheme == null) {
+                return UrlComponents.ABSENT;
+            }
+            if (matches(scheme, chars, start, end)) {
+                return ports[slot];
+            }
+            slot = (slot + 1) & (schemes.length - 1);
+        }
+        return UrlComponents.ABSENT;
+    }
+
+    private static boolean matches(char[] scheme, char[] chars, int start, int end) {
+        if (scheme.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < scheme.length; i++) {
+            if (HostCanonicalizer.toLowerCaseAscii(chars[start + i]) != scheme[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #defaultPort(char[], int, int)}, for a scheme that's a String.
+     */
+    int defaultPort(String scheme) {
+        return defaultPort(scheme.toCharArray(), 0, scheme.length());
+    }
+}
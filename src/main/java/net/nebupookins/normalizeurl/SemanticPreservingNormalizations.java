@@ -3,7 +3,10 @@ package net.nebupookins.normalizeurl;
 import java.net.MalformedURLException;
 import java.util.*;
 
-class SemanticPreservingNormalizations implements UrlNormalizer {
+class SemanticPreservingNormalizations extends PlannedUrlNormalizer {
+    SemanticPreservingNormalizations() {
+        super(NormalizationPlan.SEMANTIC_PRESERVING);
+    }
 
     /**
      * <blockquote>For all URIs, the hexadecimal digits within a percent-encoding
@@ -42,7 +45,7 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
             }
         }
         if (state != EXPECTING_ANY) {
-            throw new RuntimeException("Unexpected end of string for url " + url);
+            throw new IllegalArgumentException("Unexpected end of string for url " + url);
         }
         return retVal.toString();
     }
@@ -59,8 +62,8 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
      */
     static ParsedUrl convertSchemeAndHostToLowercase(ParsedUrl url) {
         return url
-                .withProtocol(url.protocol.toLowerCase())
-                .withHost(url.host.map(String::toLowerCase));
+                .withProtocol(HostCanonicalizer.toLowerCaseAscii(url.protocol))
+                .withHost(url.host.map(HostCanonicalizer::toLowerCaseAscii));
     }
 
     /**
@@ -79,7 +82,7 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
         final int EXPECTING_ENCODED_2 = EXPECTING_ENCODED_1 + 1;
 
         final StringBuilder retVal = new StringBuilder(url.length());
-        final StringBuilder currentTriplet = new StringBuilder(3);
+        int highNibble = 0;
         int state = EXPECTING_ANY;
         for (int i = 0; i < url.length(); i++) {
             char c = url.charAt(i);
@@ -92,14 +95,16 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
                     }
                     break;
                 case EXPECTING_ENCODED_1:
-                    currentTriplet.append(c);
+                    highNibble = hexValue(c, url);
                     state = EXPECTING_ENCODED_2;
                     break;
                 case EXPECTING_ENCODED_2:
-                    currentTriplet.append(c);
-                    char asciiCode = (char)Integer.parseInt(currentTriplet.toString(), 16);
-                    retVal.append(new UrlOctet(asciiCode).toString());
-                    currentTriplet.setLength(0);
+                    final char octet = (char) (highNibble << 4 | hexValue(c, url));
+                    if (UrlOctet.needsEncoding(octet)) {
+                        retVal.append('%').append(UrlOctet.highHexDigit(octet)).append(UrlOctet.lowHexDigit(octet));
+                    } else {
+                        retVal.append(octet);
+                    }
                     state = EXPECTING_ANY;
                     break;
                 default:
@@ -107,34 +112,116 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
             }
         }
         if (state != EXPECTING_ANY) {
-            throw new RuntimeException("Unexpected end of string for url " + url);
+            throw new IllegalArgumentException("Unexpected end of string for url " + url);
         }
         return retVal.toString();
     }
 
+    private static int hexValue(char c, String url) {
+        final int value = UrlOctet.hexValue(c);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid percent-encoded triplet in url " + url);
+        }
+        return value;
+    }
+
+    /**
+     * <blockquote>The complete path segments "." and ".." are intended only
+     * for use within relative references (Section 4.1) and are removed as
+     * part of the reference resolution process (Section 5.2).  However,
+     * some deployed implementations incorrectly assume that reference
+     * resolution is not necessary when the reference is already a URI and
+     * thus fail to remove dot-segments when they occur in non-relative
+     * paths.  URI normalizers should remove dot-segments by applying the
+     * remove_dot_segments algorithm to the path, as described in Section
+     * 5.2.4.
+     *
+     * <cite>https://tools.ietf.org/html/rfc3986#section-6.2.2.3</cite>
+     * </blockquote>
+     */
     static String normalizePathDotSegments(String path) {
-        final Queue<String> input = new ArrayDeque<>();
-        Collections.addAll(input, path.split("(?=/)"));
-        final Deque<String> output = new ArrayDeque<>();
-        while (!input.isEmpty()) {
-            final String segment = input.remove();
-            switch (segment) {
-                case "/.":
-                    //ignore it
-                    break;
-                case "/..":
-                    output.poll();
-                    break;
-                default:
-                    output.push(segment);
-                    break;
+        final char[] chars = path.toCharArray();
+        return new String(chars, 0, removeDotSegments(chars, 0, chars.length));
+    }
+
+    /**
+     * The remove_dot_segments algorithm of
+     * <a href="https://tools.ietf.org/html/rfc3986#section-5.2.4">RFC 3986 section 5.2.4</a>, applied in place to the
+     * path in chars[start, end). The output never gets longer than the input, so it's written over the part of the
+     * input that has already been read, in linear time.
+     *
+     * @return the end of the path once its dot-segments have been removed.
+     */
+    static int removeDotSegments(char[] chars, int start, int end) {
+        //The output buffer is chars[start, out), the input buffer is chars[in, end).
+        int out = start;
+        int in = start;
+        while (in < end) {
+            final int remaining = end - in;
+            if (startsWith(chars, in, end, "../")) {
+                //A: remove the prefix from the input buffer.
+                in += 3;
+            } else if (startsWith(chars, in, end, "./")) {
+                in += 2;
+            } else if (startsWith(chars, in, end, "/./")) {
+                //B: replace the prefix with "/", which is the last char of the prefix.
+                in += 2;
+            } else if (remaining == 2 && startsWith(chars, in, end, "/.")) {
+                in += 1;
+                chars[in] = '/';
+            } else if (startsWith(chars, in, end, "/../")) {
+                //C: replace the prefix with "/", and remove the last segment from the output buffer.
+                in += 3;
+                out = lastSegmentStart(chars, start, out);
+            } else if (remaining == 3 && startsWith(chars, in, end, "/..")) {
+                in += 2;
+                chars[in] = '/';
+                out = lastSegmentStart(chars, start, out);
+            } else if ((remaining == 1 && chars[in] == '.') || (remaining == 2 && startsWith(chars, in, end, ".."))) {
+                //D: remove the input buffer.
+                in = end;
+            } else {
+                //E: move the first segment, including its initial "/" if any, to the output buffer.
+                do {
+                    chars[out++] = chars[in++];
+                } while (in < end && chars[in] != '/');
             }
         }
-        return String.join("", output);
+        return out;
     }
 
+    private static boolean startsWith(char[] chars, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (chars[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the index of the last "/" in chars[start, end), or start if there is none.
+     */
+    private static int lastSegmentStart(char[] chars, int start, int end) {
+        int i = end - 1;
+        while (i >= start && chars[i] != '/') {
+            i--;
+        }
+        return Math.max(i, start);
+    }
+
+    /**
+     * <blockquote>In general, a URI that uses the generic syntax for authority
+     * with an empty path should be normalized to a path of "/".
+     *
+     * <cite>https://tools.ietf.org/html/rfc3986#section-6.2.3</cite>
+     * </blockquote>
+     */
     static ParsedUrl normalizeEmptyPath(ParsedUrl url) {
-        if (url.path.isEmpty()) {
+        if (url.host.isPresent() && url.path.isEmpty()) {
             return url.withPath("/");
         } else {
             return url;
@@ -146,21 +233,27 @@ class SemanticPreservingNormalizations implements UrlNormalizer {
             return url;
         }
         int port = url.port.getAsInt();
-        if (port == 80) {
+        if (port == SchemeRegistry.DEFAULT.defaultPort(url.protocol)) {
             return url.withPort(OptionalInt.empty());
         } else {
             return url;
         }
     }
 
-    @Override
-    public String apply(String url) {
-        ParsedUrl parsedUrl;
+    private static ParsedUrl parseStaged(String url) {
         try {
-            parsedUrl = new ParsedUrl(url);
+            return new ParsedUrl(url);
         } catch (MalformedURLException e) {
             throw new IllegalArgumentException(e);
         }
+    }
+
+    /**
+     * Runs each of the stages above one after the other. This is the reference implementation that the fused
+     * {@link NormalizationEngine} used by {@link #apply(String)} must agree with.
+     */
+    static String applyStaged(String url) {
+        ParsedUrl parsedUrl = parseStaged(url);
         parsedUrl = parsedUrl.transformFields(SemanticPreservingNormalizations::convertPercentEncodedTripletsToUpperCase);
         parsedUrl = convertSchemeAndHostToLowercase(parsedUrl);
         parsedUrl = parsedUrl.transformFields(SemanticPreservingNormalizations::decodePercentEncodedTripletsOfUnreservedCharacters);
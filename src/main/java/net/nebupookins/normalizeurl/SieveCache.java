@@ -0,0 +1,178 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded cache using the SIEVE eviction policy, which is scan resistant (keys that were hit since the last time the
+ * eviction hand passed them get a second chance, while one-off keys are evicted quickly) and, unlike LRU, doesn't need
+ * to reorder anything on a hit.
+ *
+ * <p>Lookups go straight to a {@link ConcurrentHashMap} and never take a lock; a hit only sets the entry's "visited"
+ * flag. Insertions and evictions are striped: each key belongs to one of several segments, each with its own share of
+ * the capacity, its own SIEVE queue and its own lock.</p>
+ *
+ * @see <a href="https://cachemon.github.io/SIEVE-website/">https://cachemon.github.io/SIEVE-website/</a>
+ */
+final class SieveCache<K, V> {
+    private static final int MAX_SEGMENTS = 64;
+    //Below this, segments are too small for the eviction policy to tell popular and one-off keys apart.
+    private static final int MIN_SEGMENT_CAPACITY = 64;
+
+    private final ConcurrentHashMap<K, Node<K, V>> map;
+    private final Segment<K, V>[] segments;
+    private final int maximumSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private static final class Node<K, V> {
+        final K key;
+        final V value;
+        volatile boolean visited;
+        Node<K, V> newer;
+        Node<K, V> older;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A queue of entries, newest first. The hand sweeps from the oldest entry towards the newest, giving visited
+     * entries a second chance and evicting the first unvisited one.
+     */
+    private static final class Segment<K, V> {
+        final int capacity;
+        int size;
+        Node<K, V> newest;
+        Node<K, V> oldest;
+        Node<K, V> hand;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void addNewest(Node<K, V> node) {
+            node.older = newest;
+            if (newest != null) {
+                newest.newer = node;
+            } else {
+                oldest = node;
+            }
+            newest = node;
+            size++;
+        }
+
+        Node<K, V> evict() {
+            Node<K, V> candidate = hand != null ? hand : oldest;
+            while (candidate.visited) {
+                candidate.visited = false;
+                candidate = candidate.newer != null ? candidate.newer : oldest;
+            }
+            hand = candidate.newer;
+            remove(candidate);
+            return candidate;
+        }
+
+        private void remove(Node<K, V> node) {
+            if (node.newer != null) {
+                node.newer.older = node.older;
+            } else {
+                newest = node.older;
+            }
+            if (node.older != null) {
+                node.older.newer = node.newer;
+            } else {
+                oldest = node.newer;
+            }
+            size--;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    SieveCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive, but was " + maximumSize);
+        }
+        final int segmentCount =
+                Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, maximumSize / MIN_SEGMENT_CAPACITY)));
+        this.maximumSize = maximumSize;
+        this.map = new ConcurrentHashMap<>(Math.min(maximumSize, 1 << 16));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            //Spread the remainder over the first segments, so the capacities add up to exactly maximumSize.
+            segments[i] = new Segment<>(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * @return the cached value for the key, computing and caching it first if it isn't cached yet. If the computation
+     * throws, nothing is cached and the exception propagates. Two threads missing on the same key at the same time may
+     * both compute the value, but only one of the values gets cached.
+     */
+    V get(K key, Function<? super K, ? extends V> compute) {
+        return get(key, compute, value -> true);
+    }
+
+    /**
+     * Same as {@link #get(Object, Function)}, except that a computed value is only cached if it's cacheable.
+     */
+    V get(K key, Function<? super K, ? extends V> compute, Predicate<? super V> cacheable) {
+        final Node<K, V> cached = map.get(key);
+        if (cached != null) {
+            if (!cached.visited) {
+                cached.visited = true;
+            }
+            hits.increment();
+            return cached.value;
+        }
+        misses.increment();
+        final V value = compute.apply(key);
+        if (!cacheable.test(value)) {
+            return value;
+        }
+        final Segment<K, V> segment = segments[(spread(key.hashCode())) & (segments.length - 1)];
+        synchronized (segment) {
+            final Node<K, V> raced = map.get(key);
+            if (raced != null) {
+                return raced.value;
+            }
+            if (segment.size >= segment.capacity) {
+                map.remove(segment.evict().key);
+                evictions.increment();
+            }
+            final Node<K, V> node = new Node<>(key, value);
+            segment.addNewest(node);
+            map.put(key, node);
+        }
+        return value;
+    }
+
+    private static int spread(int hashCode) {
+        return hashCode ^ (hashCode >>> 16);
+    }
+
+    int getMaximumSize() {
+        return maximumSize;
+    }
+
+    int size() {
+        return map.size();
+    }
+
+    long getHitCount() {
+        return hits.sum();
+    }
+
+    long getMissCount() {
+        return misses.sum();
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+}
@@ -0,0 +1,220 @@
+package net.nebupookins.normalizeurl;
+
+/**
+ * Splits a URL into the components described in
+ * <a href="https://tools.ietf.org/html/rfc3986#section-3">RFC 3986 section 3</a>. Each component is recorded as a pair
+ * of offsets into the input, so nothing is copied out of the input until a caller actually asks for it.
+ *
+ * <p>Only the component boundaries are validated: the scheme must be syntactically valid, IP literals must be closed
+ * and the port must be numeric. Any scheme is accepted, whether or not the JVM knows how to open a connection to
+ * it.</p>
+ *
+ * <p>An instance is meant to be reused from one URL to the next, and so is not thread safe.</p>
+ */
+final class UrlComponents {
+    static final int ABSENT = -1;
+    private static final int MAX_PORT = 0xFFFF;
+
+    char[] input;
+    //The whole of the url passed to parse(), before leading and trailing whitespace is ignored.
+    int inputOffset;
+    int inputLength;
+    int start;
+    int end;
+    int schemeEnd;
+    int userInfoStart;
+    int userInfoEnd;
+    int hostStart;
+    int hostEnd;
+    int portStart;
+    int portEnd;
+    int port;
+    int pathStart;
+    int pathEnd;
+    int queryStart;
+    int queryEnd;
+    int fragmentStart;
+    int fragmentEnd;
+
+    int errorOffset;
+    NormalizationError error;
+
+    /**
+     * @return true if the url was split successfully; false if it is malformed, in which case {@link #error} and
+     * {@link #errorOffset} describe the problem.
+     */
+    boolean parse(final char[] input, final int offset, final int length) {
+        this.input = input;
+        this.inputOffset = offset;
+        this.inputLength = length;
+        this.userInfoStart = this.userInfoEnd = ABSENT;
+        this.hostStart = this.hostEnd = ABSENT;
+        this.portStart = this.portEnd = this.port = ABSENT;
+        this.queryStart = this.queryEnd = ABSENT;
+        this.fragmentStart = this.fragmentEnd = ABSENT;
+        this.error = null;
+        this.errorOffset = ABSENT;
+
+        //Like java.net.URL, ignore leading and trailing whitespace and control characters.
+        int start = offset;
+        int end = offset + length;
+        while (start < end && input[start] <= ' ') {
+            start++;
+        }
+        while (end > start && input[end - 1] <= ' ') {
+            end--;
+        }
+        this.start = start;
+        this.end = end;
+
+        if (start == end || !isAlpha(input[start])) {
+            return fail(start, NormalizationError.NO_SCHEME);
+        }
+        int i = start + 1;
+        while (i < end && isSchemeChar(input[i])) {
+            i++;
+        }
+        if (i == end || input[i] != ':') {
+            return fail(i, NormalizationError.NO_SCHEME);
+        }
+        this.schemeEnd = i;
+        i++;
+
+        final int fragment = indexOf('#', i, end);
+        final int hierarchyEnd = fragment == ABSENT ? end : fragment;
+        final int query = indexOf('?', i, hierarchyEnd);
+        final int hierarchicalPartEnd = query == ABSENT ? hierarchyEnd : query;
+        if (fragment != ABSENT) {
+            this.fragmentStart = fragment + 1;
+            this.fragmentEnd = end;
+        }
+        if (query != ABSENT) {
+            this.queryStart = query + 1;
+            this.queryEnd = hierarchyEnd;
+        }
+
+        if (i + 1 < hierarchicalPartEnd && input[i] == '/' && input[i + 1] == '/') {
+            final int authorityStart = i + 2;
+            int authorityEnd = indexOf('/', authorityStart, hierarchicalPartEnd);
+            if (authorityEnd == ABSENT) {
+                authorityEnd = hierarchicalPartEnd;
+            }
+            if (!parseAuthority(authorityStart, authorityEnd)) {
+                return false;
+            }
+            i = authorityEnd;
+        }
+        this.pathStart = i;
+        this.pathEnd = hierarchicalPartEnd;
+        return true;
+    }
+
+    private boolean parseAuthority(final int authorityStart, final int authorityEnd) {
+        final int at = lastIndexOf('@', authorityStart, authorityEnd);
+        if (at != ABSENT) {
+            this.userInfoStart = authorityStart;
+            this.userInfoEnd = at;
+        }
+        final int hostStart = at == ABSENT ? authorityStart : at + 1;
+        final int hostEnd;
+        if (hostStart < authorityEnd && input[hostStart] == '[') {
+            final int close = indexOf(']', hostStart, authorityEnd);
+            if (close == ABSENT) {
+                return fail(hostStart, NormalizationError.UNTERMINATED_IP_LITERAL);
+            }
+            hostEnd = close + 1;
+            if (hostEnd < authorityEnd && input[hostEnd] != ':') {
+                return fail(hostEnd, NormalizationError.UNEXPECTED_CHARACTER_AFTER_IP_LITERAL);
+            }
+        } else {
+            final int colon = indexOf(':', hostStart, authorityEnd);
+            hostEnd = colon == ABSENT ? authorityEnd : colon;
+        }
+        this.hostStart = hostStart;
+        this.hostEnd = hostEnd;
+
+        if (hostEnd + 1 < authorityEnd) {
+            int port = 0;
+            for (int i = hostEnd + 1; i < authorityEnd; i++) {
+                final char c = input[i];
+                if (c < '0' || c > '9') {
+                    return fail(i, NormalizationError.INVALID_PORT);
+                }
+                port = port * 10 + (c - '0');
+                if (port > MAX_PORT) {
+                    return fail(i, NormalizationError.PORT_OUT_OF_RANGE);
+                }
+            }
+            this.portStart = hostEnd + 1;
+            this.portEnd = authorityEnd;
+            this.port = port;
+        }
+        return true;
+    }
+
+    private boolean fail(final int offset, final NormalizationError error) {
+        this.errorOffset = offset;
+        this.error = error;
+        return false;
+    }
+
+    boolean hasAuthority() {
+        return hostStart != ABSENT;
+    }
+
+    /**
+     * @return the characters between the given offsets, or null if the component they delimit is absent.
+     */
+    String substring(final int start, final int end) {
+        return start == ABSENT ? null : new String(input, start, end - start);
+    }
+
+    /**
+     * @return a description of why the last call to {@link #parse(char[], int, int)} failed, suitable for an exception
+     * message.
+     */
+    String describeError() {
+        return error.describe(url(), errorOffset - inputOffset);
+    }
+
+    /**
+     * @return the exception to throw for an error found at the given offset into {@link #input} while normalizing
+     * the url, which is described the same way as the errors found while splitting it.
+     */
+    RuntimeException exception(final NormalizationError error, final int offset) {
+        return error.toException(url(), offset - inputOffset);
+    }
+
+    /**
+     * @return the url last passed to {@link #parse(char[], int, int)}.
+     */
+    String url() {
+        return new String(input, inputOffset, inputLength);
+    }
+
+    private int indexOf(final char c, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            if (input[i] == c) {
+                return i;
+            }
+        }
+        return ABSENT;
+    }
+
+    private int lastIndexOf(final char c, final int from, final int to) {
+        for (int i = to - 1; i >= from; i--) {
+            if (input[i] == c) {
+                return i;
+            }
+        }
+        return ABSENT;
+    }
+
+    private static boolean isAlpha(final char c) {
+        return ('a' <= c && c <= 'z') || ('A' <= c && c <= 'Z');
+    }
+
+    private static boolean isSchemeChar(final char c) {
+        return isAlpha(c) || ('0' <= c && c <= '9') || c == '+' || c == '-' || c == '.';
+    }
+}
@@ -0,0 +1,325 @@
+package net.nebupookins.normalizeurl;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Normalizes newline-delimited lists of urls, one url per line, of any size. Lines are read in chunks which are
+ * normalized in parallel, and written out in the same order as they were read. Only a bounded number of chunks are in
+ * flight at any time, so memory use doesn't depend on the size of the input.
+ *
+ * <p>When reading from and writing to files, gzipped inputs are decompressed and outputs whose name ends in ".gz" are
+ * compressed.</p>
+ *
+ * <p>This class can also be run from the command line; run it without arguments for usage.</p>
+ */
+public class UrlListNormalizer {
+    /**
+     * What to do with lines that the normalizer can't normalize.
+     */
+    public enum MalformedUrlPolicy {
+        /**
+         * Stop and throw an {@link IllegalArgumentException} identifying the line.
+         */
+        FAIL,
+        /**
+         * Leave the line out of the output.
+         */
+        SKIP,
+        /**
+         * Copy the line to the output as is.
+         */
+        PASS_THROUGH,
+        /**
+         * Leave the line out of the output, and write it to the rejects stream instead.
+         */
+        REJECT;
+
+        /**
+         * @return the policy named by the value of the --on-malformed option, e.g. "pass-through", whatever the
+         * default locale.
+         */
+        static MalformedUrlPolicy fromOption(String value) {
+            return valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_'));
+        }
+    }
+
+    /**
+     * Counts of what happened to the lines of an input.
+     */
+    public static final class Summary {
+        private final long lineCount;
+        private final long malformedCount;
+
+        Summary(long lineCount, long malformedCount) {
+            this.lineCount = lineCount;
+            this.malformedCount = malformedCount;
+        }
+
+        /**
+         * @return the number of lines read from the input.
+         */
+        public long getLineCount() {
+            return lineCount;
+        }
+
+        /**
+         * @return the number of lines that could not be normalized.
+         */
+        public long getMalformedCount() {
+            return malformedCount;
+        }
+
+        @Override
+        public String toString() {
+            return lineCount + " lines, " + malformedCount + " malformed";
+        }
+    }
+
+    private static final int CHUNK_SIZE = 4096;
+    private static final int IO_BUFFER_SIZE = 1 << 20;
+
+    private final UrlNormalizer normalizer;
+    private final MalformedUrlPolicy policy;
+    private final int threads;
+
+    /**
+     * @param normalizer the normalizer to apply to each line; must be safe to call from several threads at once.
+     * @param policy     what to do with lines that can't be normalized.
+     * @param threads    the number of threads to normalize with.
+     */
+    public UrlListNormalizer(UrlNormalizer normalizer, MalformedUrlPolicy policy, int threads) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive, but was " + threads);
+        }
+        this.normalizer = normalizer;
+        this.policy = policy;
+        this.threads = threads;
+    }
+
+    /**
+     * Normalizes the urls in the input file into the output file.
+     *
+     * @param rejects where to write lines that can't be normalized; only used, and then required, with
+     *                {@link MalformedUrlPolicy#REJECT}.
+     */
+    public Summary normalize(Path input, Path output, Path rejects) throws IOException {
+        try (InputStream in = openInput(input);
+             OutputStream out = openOutput(output);
+             OutputStream rejectsOut = openRejects(rejects)) {
+            return normalize(in, out, rejectsOut);
+        }
+    }
+
+    /**
+     * @return the stream to write rejected lines to, or null if the policy doesn't reject lines, in which case the
+     * rejects file isn't created, let alone truncated.
+     */
+    private OutputStream openRejects(Path rejects) throws IOException {
+        return rejects == null || policy != MalformedUrlPolicy.REJECT ? null : openOutput(rejects);
+    }
+
+    /**
+     * Normalizes the UTF-8 encoded urls read from in, writing them to out. Neither stream is closed.
+     *
+     * @param rejects where to write lines that can't be normalized; only used, and then required, with
+     *                {@link MalformedUrlPolicy#REJECT}.
+     */
+    public Summary normalize(InputStream in, OutputStream out, OutputStream rejects) throws IOException {
+        if (policy == MalformedUrlPolicy.REJECT && rejects == null) {
+            throw new IllegalArgumentException("A rejects stream is required with " + MalformedUrlPolicy.REJECT);
+        }
+        final BufferedReader reader =
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+        final Writer rejectsWriter = rejects == null ? null
+                : new BufferedWriter(new OutputStreamWriter(rejects, StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "url-list-normalizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final Deque<Chunk> inFlight = new ArrayDeque<>();
+            long lineCount = 0;
+            long malformedCount = 0;
+            while (true) {
+                final String[] lines = readChunk(reader);
+                if (lines.length > 0) {
+                    final Chunk chunk = new Chunk(lineCount, lines);
+                    lineCount += lines.length;
+                    chunk.result = executor.submit(() -> normalizer.applyAll(lines));
+                    inFlight.add(chunk);
+                }
+                //Keep every thread busy, plus one chunk queued up for each, but no more than that.
+                while (inFlight.size() > 2 * threads || (lines.length == 0 && !inFlight.isEmpty())) {
+                    malformedCount += write(inFlight.remove(), writer, rejectsWriter);
+                }
+                if (lines.length == 0) {
+                    break;
+                }
+            }
+            writer.flush();
+            if (rejectsWriter != null) {
+                rejectsWriter.flush();
+            }
+            return new Summary(lineCount, malformedCount);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class Chunk {
+        final long firstLineNumber;
+        final String[] lines;
+        Future<BatchResult> result;
+
+        Chunk(long firstLineNumber, String[] lines) {
+            this.firstLineNumber = firstLineNumber;
+            this.lines = lines;
+        }
+    }
+
+    private static String[] readChunk(BufferedReader reader) throws IOException {
+        final String[] lines = new String[CHUNK_SIZE];
+        int count = 0;
+        String line;
+        while (count < lines.length && (line = reader.readLine()) != null) {
+            lines[count++] = line;
+        }
+        return count == lines.length ? lines : Arrays.copyOf(lines, count);
+    }
+
+    /**
+     * @return the number of malformed lines in the chunk.
+     */
+    private long write(Chunk chunk, Writer writer, Writer rejectsWriter) throws IOException {
+        final BatchResult result;
+        try {
+            result = chunk.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        long malformedCount = 0;
+        for (int i = 0; i < result.size(); i++) {
+            if (result.isSuccess(i)) {
+                writer.write(result.get(i));
+                writer.write('\n');
+                continue;
+            }
+            malformedCount++;
+            switch (policy) {
+                case FAIL:
+                    throw new IllegalArgumentException(
+                            "Could not normalize line " + (chunk.firstLineNumber + i + 1) + ": " + chunk.lines[i],
+                            result.getFailure(i));
+                case SKIP:
+                    break;
+                case PASS_THROUGH:
+                    writer.write(chunk.lines[i]);
+                    writer.write('\n');
+                    break;
+                case REJECT:
+                    rejectsWriter.write(chunk.lines[i]);
+                    rejectsWriter.write('\n');
+                    break;
+                default:
+                    throw new RuntimeException("Bug in code, should never get here.");
+            }
+        }
+        return malformedCount;
+    }
+
+    private static InputStream openInput(Path path) throws IOException {
+        final InputStream in = new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE);
+        in.mark(2);
+        final int first = in.read();
+        final int second = in.read();
+        in.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == GZIPInputStream.GZIP_MAGIC >> 8) {
+            return new GZIPInputStream(in, IO_BUFFER_SIZE);
+        }
+        return in;
+    }
+
+    private static OutputStream openOutput(Path path) throws IOException {
+        final OutputStream out = Files.newOutputStream(path);
+        if (isGzipName(path)) {
+            return new GZIPOutputStream(out, IO_BUFFER_SIZE);
+        }
+        return out;
+    }
+
+    private static boolean isGzipName(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar normalize-url.jar [options] INPUT OUTPUT",
+            "",
+            "Normalizes the urls in INPUT, one per line, into OUTPUT. Gzipped INPUTs are decompressed, and",
+            "OUTPUTs ending in .gz are compressed.",
+            "Use - for INPUT or OUTPUT to read from standard input or write to standard output.",
+            "",
+            "Options:",
+            "  --on-malformed=fail|skip|pass-through|reject  what to do with lines that can't be normalized;",
+            "                                                defaults to fail",
+            "  --rejects=FILE                                where rejected lines go; required with reject",
+            "  --threads=N                                   defaults to the number of processors");
+
+    public static void main(String[] args) throws IOException {
+        MalformedUrlPolicy policy = MalformedUrlPolicy.FAIL;
+        Path rejects = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        final String[] files = new String[2];
+        int fileCount = 0;
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--on-malformed=")) {
+                    policy = MalformedUrlPolicy.fromOption(arg.substring("--on-malformed=".length()));
+                } else if (arg.startsWith("--rejects=")) {
+                    rejects = Paths.get(arg.substring("--rejects=".length()));
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (fileCount < files.length && (arg.equals("-") || !arg.startsWith("-"))) {
+                    files[fileCount++] = arg;
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument: " + arg);
+                }
+            }
+            if (fileCount != files.length) {
+                throw new IllegalArgumentException("Expected an INPUT and an OUTPUT");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        final UrlListNormalizer listNormalizer =
+                new UrlListNormalizer(UrlNormalizer.semanticPreservingNormalizer(), policy, threads);
+        try (InputStream in = files[0].equals("-") ? System.in : openInput(Paths.get(files[0]));
+             OutputStream out = files[1].equals("-") ? System.out : openOutput(Paths.get(files[1]));
+             OutputStream rejectsOut = listNormalizer.openRejects(rejects)) {
+            final Summary summary = listNormalizer.normalize(in, out, rejectsOut);
+            System.err.println(summary);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,6 +1,12 @@
 package net.nebupookins.normalizeurl;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * <p>Tools to normalize a URL. From Wikipedia:</p>
@@ -27,6 +33,229 @@ public interface UrlNormalizer extends Function<String, String> {
     @Override
     public String apply(String url);
 
+    /**
+     * Same as {@link #apply(String)}, except that a url that can't be normalized results in a failed result rather
+     * than an exception. For the normalizers returned by this interface's factory methods, no exception is created
+     * at all, which makes failures about as cheap as successes; that matters when a good share of the input is
+     * malformed.
+     *
+     * <p>This default implementation calls {@link #apply(String)} and catches what it throws, so it reports every
+     * failure as {@link NormalizationError#OTHER}.</p>
+     *
+     * @param url the url to normalize; must not be null.
+     * @return the normalized form of the url, or the reason it couldn't be normalized.
+     */
+    default NormalizationResult tryApply(String url) {
+        try {
+            return NormalizationResult.success(apply(url));
+        } catch (RuntimeException e) {
+            return NormalizationResult.failure(url, e);
+        }
+    }
+
+    /**
+     * Determines whether two urls have the same normalized form, i.e. whether {@code apply(url1).equals(apply(url2))}.
+     * Implementations may stop normalizing as soon as the normalized forms are known to differ, in which case a
+     * malformed url may result in false rather than an exception.
+     *
+     * @param url1 a url to compare; must be a valid non-null URL.
+     * @param url2 the other url to compare; must be a valid non-null URL.
+     * @return true if both urls normalize to the same url.
+     */
+    default boolean equivalent(String url1, String url2) {
+        return apply(url1).equals(apply(url2));
+    }
+
+    /**
+     * Normalizes a UTF-8 encoded url, writing the UTF-8 encoded normalized form into a caller-provided array. Gives
+     * the same result as decoding the url, calling {@link #apply(String)} and encoding the result, but implementations
+     * may avoid creating the intermediate Strings.
+     *
+     * @param url        the array holding the url to normalize.
+     * @param offset     the index of the url's first byte.
+     * @param length     the number of bytes in the url.
+     * @param dest       the array to write the normalized url to.
+     * @param destOffset the index in dest to start writing at.
+     * @return the number of bytes written to dest.
+     * @throws IllegalArgumentException if the url is not valid UTF-8, or could not be normalized.
+     * @throws BufferOverflowException  if dest doesn't have room for the normalized url.
+     */
+    default int apply(byte[] url, int offset, int length, byte[] dest, int destOffset) {
+        final String decoded = Utf8.decode(ByteBuffer.wrap(url, offset, length));
+        final byte[] normalized = apply(decoded).getBytes(StandardCharsets.UTF_8);
+        if (normalized.length > dest.length - destOffset) {
+            throw new BufferOverflowException();
+        }
+        System.arraycopy(normalized, 0, dest, destOffset, normalized.length);
+        return normalized.length;
+    }
+
+    /**
+     * Same as {@link #apply(byte[], int, int, byte[], int)}, normalizing the url made up of url's remaining bytes into
+     * dest's remaining space. On success, url's position is advanced to its limit and dest's position is advanced past
+     * the bytes written; if an exception is thrown, the positions are left unchanged.
+     *
+     * @return the number of bytes written to dest.
+     */
+    default int apply(ByteBuffer url, ByteBuffer dest) {
+        final byte[] normalized = apply(Utf8.decode(url.duplicate())).getBytes(StandardCharsets.UTF_8);
+        if (normalized.length > dest.remaining()) {
+            throw new BufferOverflowException();
+        }
+        dest.put(normalized);
+        url.position(url.limit());
+        return normalized.length;
+    }
+
+    /**
+     * Computes a 128-bit fingerprint of the normalized form of the url, suitable for deduplication. The fingerprint is
+     * always the 128-bit MurmurHash3 (x64 variant, seed 0) of the UTF-8 bytes of {@link #apply(String)}, i.e. the
+     * same as Guava's {@code Hashing.murmur3_128().hashString(apply(url), UTF_8)}, so it is stable across releases and
+     * across implementations. Implementations may compute it without creating the normalized String.
+     *
+     * @param url  the url to fingerprint.
+     * @param dest where to write the fingerprint: the first 64 bits go in dest[0], and the remaining 64 in dest[1].
+     */
+    default void fingerprint128(String url, long[] dest) {
+        final byte[] normalized = apply(url).getBytes(StandardCharsets.UTF_8);
+        Murmur3.hash128(normalized, 0, normalized.length, dest);
+    }
+
+    /**
+     * Same as {@link #fingerprint128(String, long[])}, returning the fingerprint in a new array of two longs.
+     */
+    default long[] fingerprint128(String url) {
+        final long[] fingerprint = new long[2];
+        fingerprint128(url, fingerprint);
+        return fingerprint;
+    }
+
+    /**
+     * @return a 64-bit fingerprint of the normalized form of the url; namely the first 64 bits of
+     * {@link #fingerprint128(String, long[])}.
+     */
+    default long fingerprint64(String url) {
+        return fingerprint128(url)[0];
+    }
+
+    /**
+     * Splits the url into its components, which are only normalized once they're asked for, so that callers that need
+     * only some of them don't pay for normalizing the rest.
+     *
+     * <p>This default implementation normalizes the whole url up front with {@link #apply(String)}; the normalizers
+     * returned by this interface's factory methods override it to normalize each component lazily.</p>
+     *
+     * @throws IllegalArgumentException if the url cannot be normalized, or, for lazy implementations, split into
+     *                                  components. In that case, an error in a component may only be reported when
+     *                                  the component is asked for.
+     */
+    default NormalizedUrl parse(String url) {
+        return new NormalizedUrl(NormalizationPlan.NONE, apply(url));
+    }
+
+    /**
+     * Normalizes every url in the batch on the calling thread. Unlike {@link #apply(String)}, a url that cannot be
+     * normalized does not abort the batch; instead its failure is recorded in the result.
+     *
+     * @param urls the urls to normalize.
+     * @return the normalized form of each url, or the reason it could not be normalized, in the same order as urls.
+     */
+    default BatchResult applyAll(String[] urls) {
+        return BatchNormalizationTask.normalizeSequentially(this, urls);
+    }
+
+    /**
+     * Same as {@link #applyAll(String[])}, for a list of urls.
+     */
+    default BatchResult applyAll(List<String> urls) {
+        return applyAll(urls.toArray(new String[0]));
+    }
+
+    /**
+     * Same as {@link #applyAll(String[])}, except the batch is split across the workers of the common fork-join pool.
+     * The implementation must therefore be safe to call from several threads at once, as the normalizers returned by
+     * this interface's factory methods are.
+     */
+    default BatchResult applyAllInParallel(String[] urls) {
+        return applyAllInParallel(urls, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #applyAll(String[])}, except the batch is split across the workers of the given pool.
+     */
+    default BatchResult applyAllInParallel(String[] urls, ForkJoinPool pool) {
+        return BatchNormalizationTask.normalizeInParallel(this, urls, pool);
+    }
+
+    /**
+     * Same as {@link #applyAllInParallel(String[])}, for a list of urls.
+     */
+    default BatchResult applyAllInParallel(List<String> urls) {
+        return applyAllInParallel(urls.toArray(new String[0]));
+    }
+
+    /**
+     * Same as {@link #applyAllInParallel(String[], ForkJoinPool)}, for a list of urls.
+     */
+    default BatchResult applyAllInParallel(List<String> urls, ForkJoinPool pool) {
+        return applyAllInParallel(urls.toArray(new String[0]), pool);
+    }
+
+    /**
+     * Same as {@link #applyAll(String[])}, for a stream of urls, such as the lines of a file, which is normalized
+     * lazily as the returned stream is consumed rather than collected into a batch first. Each url results in a
+     * {@link NormalizationResult} from {@link #tryApply(String)}, so one that can't be normalized doesn't end the
+     * stream. The returned stream is parallel if urls is, and is split the same way.
+     *
+     * @param urls the urls to normalize.
+     * @return the outcome for each url, in the same order as urls if it is ordered.
+     */
+    default Stream<NormalizationResult> applyAll(Stream<String> urls) {
+        return urls.map(this::tryApply);
+    }
+
+    /**
+     * Same as {@link #applyAll(Stream)}, except the stream is made parallel, so that it's split across the workers of
+     * the common fork-join pool as it's consumed, or of whichever pool the terminal operation runs in. The
+     * implementation must therefore be safe to call from several threads at once.
+     */
+    default Stream<NormalizationResult> applyAllInParallel(Stream<String> urls) {
+        return applyAll(urls.parallel());
+    }
+
+    /**
+     * @param maximumSize the maximum number of urls to remember.
+     * @return a normalizer that gives the same results as this one, but remembers the results for recently seen urls.
+     * @see CachingUrlNormalizer
+     */
+    default CachingUrlNormalizer withCache(int maximumSize) {
+        return new CachingUrlNormalizer(this, maximumSize);
+    }
+
+    /**
+     * @return a session for normalizing urls with this normalizer into caller-supplied buffers on the calling thread.
+     * @see UrlNormalizerSession
+     */
+    default UrlNormalizerSession newSession() {
+        return new UrlNormalizerSession(this);
+    }
+
+    /**
+     * @return a facade which normalizes urls with this normalizer on the common fork-join pool, returning futures.
+     * @see AsyncUrlNormalizer
+     */
+    default AsyncUrlNormalizer async() {
+        return new AsyncUrlNormalizer(this);
+    }
+
+    /**
+     * @return a normalizer that gives the same results as this one, but records metrics about the urls it normalizes.
+     * @see InstrumentedUrlNormalizer
+     */
+    default InstrumentedUrlNormalizer withMetrics() {
+        return new InstrumentedUrlNormalizer(this);
+    }
+
     /**
      * @return a UrlNormalizer that performs "safe" normalization in the sense that all normalizations performed are the
      * type that all RFC-complying HTTP clients are expected to perform. Therefore such normalizations would be
@@ -36,5 +265,13 @@ public interface UrlNormalizer extends Function<String, String> {
     public static UrlNormalizer semanticPreservingNormalizer() {
         return new SemanticPreservingNormalizations();
     }
+
+    /**
+     * @return a builder for a UrlNormalizer performing a custom selection of normalizations, including "more
+     * dangerous" ones that {@link #semanticPreservingNormalizer()} doesn't perform.
+     */
+    public static UrlNormalizerBuilder builder() {
+        return new UrlNormalizerBuilder();
+    }
 }
 
@@ -0,0 +1,101 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.*;
+
+/**
+ * Builds a {@link UrlNormalizer} performing any combination of {@link Normalization}s, e.g.
+ *
+ * <pre>{@code
+ * UrlNormalizer normalizer = UrlNormalizer.builder()
+ *         .semanticPreserving()
+ *         .with(Normalization.REMOVE_FRAGMENT, Normalization.SORT_QUERY_PARAMETERS)
+ *         .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+ *         .build();
+ * }</pre>
+ *
+ * <p>The selected normalizations are compiled once, when {@link #build()} is called, into a plan that normalizes each
+ * url in a single pass no matter how many normalizations are selected. Because of that, the normalizations are always
+ * applied in the same well-defined order (the order in which {@link Normalization} declares them, percent-encoding
+ * first and query rewriting last), regardless of the order in which they were added to the builder.</p>
+ */
+public final class UrlNormalizerBuilder {
+    /**
+     * Names of common query parameters that are only used to track where a visitor came from, and that don't change
+     * the content of the page.
+     */
+    public static final Set<String> TRACKING_PARAMETERS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+            "utm_source", "utm_medium", "utm_campaign", "utm_term", "utm_content", "utm_id",
+            "fbclid", "gclid", "dclid", "msclkid", "mc_cid", "mc_eid", "igshid", "yclid", "_ga", "_gl")));
+
+    private final EnumSet<Normalization> normalizations = EnumSet.noneOf(Normalization.class);
+    private final Set<String> removedQueryParameters = new LinkedHashSet<>();
+    private final Map<String, Integer> defaultPorts = new LinkedHashMap<>(SchemeRegistry.DEFAULT_PORTS);
+
+    UrlNormalizerBuilder() {
+    }
+
+    /**
+     * Selects the normalizations performed by {@link UrlNormalizer#semanticPreservingNormalizer()}.
+     */
+    public UrlNormalizerBuilder semanticPreserving() {
+        normalizations.addAll(EnumSet.range(
+                Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS, Normalization.REMOVE_DEFAULT_PORT));
+        return this;
+    }
+
+    /**
+     * Selects the given normalizations, in addition to the ones already selected.
+     */
+    public UrlNormalizerBuilder with(Normalization... normalizations) {
+        Collections.addAll(this.normalizations, normalizations);
+        return this;
+    }
+
+    /**
+     * Deselects the given normalizations.
+     */
+    public UrlNormalizerBuilder without(Normalization... normalizations) {
+        this.normalizations.removeAll(Arrays.asList(normalizations));
+        return this;
+    }
+
+    /**
+     * Selects {@link Normalization#REMOVE_QUERY_PARAMETERS}, removing query parameters with any of the given names in
+     * addition to the names given previously. Names are matched exactly, after the percent-encoding normalizations (if
+     * selected) have been applied to them, except that a name ending in '*' matches every name that starts with the
+     * rest of it, e.g. "utm_*". However many names are given, checking a parameter takes time proportional to the
+     * length of its name.
+     */
+    public UrlNormalizerBuilder removeQueryParameters(Collection<String> names) {
+        normalizations.add(Normalization.REMOVE_QUERY_PARAMETERS);
+        removedQueryParameters.addAll(names);
+        return this;
+    }
+
+    /**
+     * Sets the default port of a scheme, which {@link Normalization#REMOVE_DEFAULT_PORT} removes from urls with that
+     * scheme. Out of the box, "http" and "ws" default to port 80, "https" and "wss" to 443 and "ftp" to 21; the port
+     * of a url with any other scheme is never removed. Schemes are matched regardless of case.
+     */
+    public UrlNormalizerBuilder defaultPort(String scheme, int port) {
+        if (scheme.isEmpty()) {
+            throw new IllegalArgumentException("scheme must not be empty");
+        }
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("port must be between 0 and 65535, but was " + port);
+        }
+        defaultPorts.put(HostCanonicalizer.toLowerCaseAscii(scheme), port);
+        return this;
+    }
+
+    /**
+     * @return a normalizer performing the selected normalizations. It is immutable, and safe to share between
+     * threads; later changes to this builder don't affect it.
+     */
+    public UrlNormalizer build() {
+        final SchemeRegistry schemes = defaultPorts.equals(SchemeRegistry.DEFAULT_PORTS)
+                ? SchemeRegistry.DEFAULT
+                : new SchemeRegistry(defaultPorts);
+        return new PlannedUrlNormalizer(new NormalizationPlan(normalizations, removedQueryParameters, schemes));
+    }
+}
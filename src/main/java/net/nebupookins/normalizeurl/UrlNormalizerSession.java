@@ -0,0 +1,123 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+/**
+ * Normalizes urls into caller-supplied buffers, with scratch buffers of its own which are reused from one url to the
+ * next, for loops that normalize urls one after the other on the same thread. Neither the url nor its normalized form
+ * is ever turned into a String, so once the scratch buffers have grown to fit the longest url, normalizing a url
+ * allocates nothing, except to canonicalize a host that isn't already canonical.
+ *
+ * <p>That only holds for the normalizers built by {@link UrlNormalizer#builder()} and
+ * {@link UrlNormalizer#semanticPreservingNormalizer()}. For any other normalizer, a session gives the same results by
+ * way of {@link UrlNormalizer#apply(String)}, with the allocations that entails.</p>
+ *
+ * <p>Sessions are not thread safe; each should be confined to a single thread, e.g. created by a worker when it
+ * starts and used for every url it handles.</p>
+ */
+public final class UrlNormalizerSession {
+    private final UrlNormalizer normalizer;
+    //Null unless normalizer is a PlannedUrlNormalizer.
+    private final NormalizationPlan plan;
+    private final NormalizationEngine engine;
+    private int errorOffset;
+
+    /**
+     * @param normalizer the normalizer to apply.
+     */
+    public UrlNormalizerSession(UrlNormalizer normalizer) {
+        this.normalizer = normalizer;
+        if (normalizer instanceof PlannedUrlNormalizer) {
+            this.plan = ((PlannedUrlNormalizer) normalizer).plan;
+            this.engine = new NormalizationEngine();
+        } else {
+            this.plan = null;
+            this.engine = null;
+        }
+    }
+
+    /**
+     * @return the normalizer this session applies.
+     */
+    public UrlNormalizer getNormalizer() {
+        return normalizer;
+    }
+
+    /**
+     * Appends the normalized form of the url to dest.
+     *
+     * @return the number of chars appended.
+     * @throws IllegalArgumentException if the url can't be normalized, as {@link UrlNormalizer#apply(String)} would;
+     *                                  nothing is appended in that case.
+     */
+    public int appendTo(CharSequence url, StringBuilder dest) {
+        if (engine == null) {
+            final String normalized = normalizer.apply(url.toString());
+            dest.append(normalized);
+            return normalized.length();
+        }
+        final int length = engine.normalizeToChars(plan, url, false);
+        dest.append(engine.charOutput(), 0, length);
+        return length;
+    }
+
+    /**
+     * Writes the normalized form of the url to dest's remaining space, advancing its position past the chars written.
+     *
+     * @return the number of chars written.
+     * @throws IllegalArgumentException if the url can't be normalized, as {@link UrlNormalizer#apply(String)} would.
+     * @throws BufferOverflowException  if dest doesn't have room for the normalized url.
+     *                                  Nothing is written in either case.
+     */
+    public int appendTo(CharSequence url, CharBuffer dest) {
+        if (engine == null) {
+            final String normalized = normalizer.apply(url.toString());
+            if (normalized.length() > dest.remaining()) {
+                throw new BufferOverflowException();
+            }
+            dest.put(normalized);
+            return normalized.length();
+        }
+        final int length = engine.normalizeToChars(plan, url, false);
+        if (length > dest.remaining()) {
+            throw new BufferOverflowException();
+        }
+        dest.put(engine.charOutput(), 0, length);
+        return length;
+    }
+
+    /**
+     * Same as {@link #appendTo(CharSequence, StringBuilder)}, except that a url that can't be normalized is reported
+     * by the return value rather than an exception, so that malformed urls allocate nothing either.
+     *
+     * @return null if the normalized url was appended, or the reason the url can't be normalized, in which case
+     * nothing is appended and {@link #getErrorOffset()} tells where in the url the problem is.
+     */
+    public NormalizationError tryAppendTo(CharSequence url, StringBuilder dest) {
+        if (engine == null) {
+            final NormalizationResult result = normalizer.tryApply(url.toString());
+            if (!result.isSuccess()) {
+                errorOffset = result.getErrorOffset();
+                return result.getError();
+            }
+            dest.append(result.get());
+            return null;
+        }
+        final int length = engine.normalizeToChars(plan, url, true);
+        if (length < 0) {
+            errorOffset = engine.errorOffset();
+            return engine.error();
+        }
+        dest.append(engine.charOutput(), 0, length);
+        return null;
+    }
+
+    /**
+     * @return the offset in the url of the problem last reported by {@link #tryAppendTo}, or -1 if there's no
+     * particular place to point to.
+     */
+    public int getErrorOffset() {
+        return errorOffset;
+    }
+}
@@ -1,10 +1,77 @@
 package net.nebupookins.normalizeurl;
 
+import java.util.Arrays;
+
 /**
  * Represents a single "character" in a URL, after byte decoding. That is, "a" is a single character in an URL, but "%20"
  * is also a single "character" in an URL.
+ *
+ * <p>Classification and encoding are driven by tables covering all 256 octets, computed once, so none of the
+ * methods here need to compare ranges or build strings.</p>
  */
 public class UrlOctet {
+    private static final int OCTET_COUNT = 0x100;
+
+    //Bits of CLASSES.
+    private static final byte UNRESERVED = 1;
+    private static final byte GEN_DELIM = 1 << 1;
+    private static final byte SUB_DELIM = 1 << 2;
+    private static final byte HEX_DIGIT = 1 << 3;
+    //The characters that a query may contain besides triplets, i.e. pchar, "/" and "?".
+    private static final byte QUERY = 1 << 4;
+
+    private static final byte[] CLASSES = new byte[OCTET_COUNT];
+    /**
+     * The value of each hex digit char, or -1 for chars that aren't hex digits. Only covers ASCII; any other char is
+     * not a hex digit.
+     */
+    private static final byte[] HEX_VALUES = new byte[0x80];
+    /**
+     * The two uppercase hex digits of each octet, e.g. '2' and 'A' at indices 0x2A * 2 and 0x2A * 2 + 1.
+     */
+    private static final char[] HEX_PAIRS = new char[OCTET_COUNT * 2];
+    private static final String[] ENCODED = new String[OCTET_COUNT];
+    private static final UrlOctet[] INSTANCES = new UrlOctet[OCTET_COUNT];
+
+    static {
+        final String hexDigits = "0123456789ABCDEF";
+        Arrays.fill(HEX_VALUES, (byte) -1);
+        for (int i = 0; i < 16; i++) {
+            final char upper = hexDigits.charAt(i);
+            final char lower = Character.toLowerCase(upper);
+            HEX_VALUES[upper] = (byte) i;
+            HEX_VALUES[lower] = (byte) i;
+            CLASSES[upper] |= HEX_DIGIT;
+            CLASSES[lower] |= HEX_DIGIT;
+        }
+        //ALPHA, in both cases, and DIGIT.
+        for (char c = 'A'; c <= 'Z'; c++) {
+            CLASSES[c] |= UNRESERVED;
+            CLASSES[c + ('a' - 'A')] |= UNRESERVED;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CLASSES[c] |= UNRESERVED;
+        }
+        for (char c : "-._~".toCharArray()) {
+            CLASSES[c] |= UNRESERVED;
+        }
+        for (char c : ":/?#[]@".toCharArray()) {
+            CLASSES[c] |= GEN_DELIM;
+        }
+        for (char c : "!$&'()*+,;=".toCharArray()) {
+            CLASSES[c] |= SUB_DELIM;
+        }
+        for (int octet = 0; octet < OCTET_COUNT; octet++) {
+            if ((CLASSES[octet] & (UNRESERVED | SUB_DELIM)) != 0 || ":@/?".indexOf(octet) >= 0) {
+                CLASSES[octet] |= QUERY;
+            }
+            HEX_PAIRS[octet * 2] = hexDigits.charAt(octet >> 4);
+            HEX_PAIRS[octet * 2 + 1] = hexDigits.charAt(octet & 0xF);
+            ENCODED[octet] = new String(new char[]{'%', HEX_PAIRS[octet * 2], HEX_PAIRS[octet * 2 + 1]});
+            INSTANCES[octet] = new UrlOctet((char) octet);
+        }
+    }
+
     private final char octet;
 
     public UrlOctet(char octet) {
@@ -14,6 +81,16 @@ public class UrlOctet {
         this.octet = octet;
     }
 
+    /**
+     * Same as the constructor, but returns a shared instance rather than allocating a new one.
+     */
+    public static UrlOctet valueOf(char octet) {
+        if (octet > 0xFF) {
+            throw new IllegalArgumentException("Url char must be between 0x00 and 0xFF");
+        }
+        return INSTANCES[octet];
+    }
+
     @Override
     public boolean equals(Object that) {
         if (this == that) {
@@ -35,36 +112,58 @@ public class UrlOctet {
         return octet;
     }
 
-    private boolean isAlpha() {
-        return 0x41 <= octet && octet <= 0x5A;
+    /**
+     * @return true if this character is a reserved character and must be encoded when present in a URL; false if it can
+     * be represented literally.
+     */
+    public boolean needsEncoding() {
+        return needsEncoding(octet);
     }
 
-    private boolean isDigit() {
-        return 0x30 <= octet && octet <= 0x39;
+    /**
+     * Same as {@link #needsEncoding()}, for callers that have a raw octet and don't want to look up a UrlOctet.
+     */
+    static boolean needsEncoding(char octet) {
+        return (CLASSES[octet] & UNRESERVED) == 0;
+    }
+
+    /**
+     * @return whether c may appear literally in the query of a url.
+     */
+    static boolean isAllowedInQuery(char c) {
+        return c < OCTET_COUNT && (CLASSES[c] & QUERY) != 0;
     }
 
-    private boolean isHyphen() {
-        return octet == 0x2D;
+    /**
+     * @return whether c may appear literally anywhere in a url, i.e. is unreserved, reserved or '%'.
+     */
+    static boolean isAllowedInUrl(char c) {
+        return c < OCTET_COUNT && ((CLASSES[c] & (UNRESERVED | GEN_DELIM | SUB_DELIM)) != 0 || c == '%');
     }
 
-    private boolean isPeriod() {
-        return octet == 0x2E;
+    static boolean isHexDigit(char c) {
+        return c < OCTET_COUNT && (CLASSES[c] & HEX_DIGIT) != 0;
     }
 
-    private boolean isUnderscore() {
-        return octet == 0x5F;
+    /**
+     * @return the value of the hex digit, or -1 if c isn't a hex digit.
+     */
+    static int hexValue(char c) {
+        return c < HEX_VALUES.length ? HEX_VALUES[c] : -1;
     }
 
-    private boolean isTilde() {
-        return octet == 0x7E;
+    /**
+     * @return the uppercase hex digit for the upper half of the octet, e.g. '2' for 0x2A.
+     */
+    static char highHexDigit(int octet) {
+        return HEX_PAIRS[octet * 2];
     }
 
     /**
-     * @return true if this character is a reserved character and must be encoded when present in a URL; false if it can
-     * be represented literally.
+     * @return the uppercase hex digit for the lower half of the octet, e.g. 'A' for 0x2A.
      */
-    public boolean needsEncoding() {
-        return !(isAlpha() || isDigit() || isHyphen() || isPeriod() || isUnderscore() || isTilde());
+    static char lowHexDigit(int octet) {
+        return HEX_PAIRS[octet * 2 + 1];
     }
 
     /**
@@ -72,15 +171,7 @@ public class UrlOctet {
      * character..
      */
     public String asEncoded() {
-        String hexString = Integer.toString(octet, 16).toUpperCase();
-        switch (hexString.length()) {
-            case 1:
-                return "%0" + hexString;
-            case 2:
-                return "%" + hexString;
-            default:
-                throw new RuntimeException("Bug in code; this should never happen. Got hexString: " + hexString);
-        }
+        return ENCODED[octet];
     }
 
     /**
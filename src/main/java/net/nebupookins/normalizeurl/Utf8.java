@@ -0,0 +1,141 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * UTF-8 transcoding between byte arrays and char arrays, for the byte-oriented entry points. Unlike going through
+ * {@link String}, nothing is allocated by the array-to-array methods: both sides are caller-provided.
+ */
+final class Utf8 {
+    private Utf8() {
+    }
+
+    /**
+     * Decodes the bytes into dest, starting at index 0. Every byte decodes to at most one char, so dest needs no more
+     * room than length.
+     *
+     * @return the number of chars written.
+     * @throws IllegalArgumentException if the bytes are not valid UTF-8.
+     */
+    static int decode(byte[] src, int offset, int length, char[] dest) {
+        final int end = offset + length;
+        int written = 0;
+        int i = offset;
+        while (i < end) {
+            final int b = src[i];
+            if (b >= 0) {
+                dest[written++] = (char) b;
+                i++;
+            } else if ((b & 0xE0) == 0xC0) {
+                final int codePoint = (b & 0x1F) << 6 | continuation(src, i, end, 1);
+                if (codePoint < 0x80) {
+                    throw malformed(i);
+                }
+                dest[written++] = (char) codePoint;
+                i += 2;
+            } else if ((b & 0xF0) == 0xE0) {
+                final int codePoint =
+                        (b & 0x0F) << 12 | continuation(src, i, end, 1) << 6 | continuation(src, i, end, 2);
+                if (codePoint < 0x800 || Character.isSurrogate((char) codePoint)) {
+                    throw malformed(i);
+                }
+                dest[written++] = (char) codePoint;
+                i += 3;
+            } else if ((b & 0xF8) == 0xF0) {
+                final int codePoint = (b & 0x07) << 18 | continuation(src, i, end, 1) << 12
+                        | continuation(src, i, end, 2) << 6 | continuation(src, i, end, 3);
+                if (codePoint < 0x10000 || codePoint > Character.MAX_CODE_POINT) {
+                    throw malformed(i);
+                }
+                dest[written++] = Character.highSurrogate(codePoint);
+                dest[written++] = Character.lowSurrogate(codePoint);
+                i += 4;
+            } else {
+                throw malformed(i);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Decodes the bytes into a String, rejecting malformed input the same way {@link #decode(byte[], int, int, char[])}
+     * does rather than replacing it.
+     */
+    static String decode(ByteBuffer bytes) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(bytes).toString();
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private static int continuation(byte[] src, int start, int end, int index) {
+        if (start + index >= end || (src[start + index] & 0xC0) != 0x80) {
+            throw malformed(start);
+        }
+        return src[start + index] & 0x3F;
+    }
+
+    private static IllegalArgumentException malformed(int index) {
+        return new IllegalArgumentException("Malformed UTF-8 sequence at index " + index);
+    }
+
+    /**
+     * @return the number of bytes needed to encode the given chars.
+     */
+    static int encodedLength(char[] src, int offset, int length) {
+        final int end = offset + length;
+        int encodedLength = length;
+        for (int i = offset; i < end; i++) {
+            final char c = src[i];
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    encodedLength += 1;
+                } else if (!Character.isSurrogate(c)) {
+                    encodedLength += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src[i + 1])) {
+                    encodedLength += 2;
+                    i++;
+                }
+            }
+        }
+        return encodedLength;
+    }
+
+    /**
+     * Encodes the chars into dest, which must have room for {@link #encodedLength(char[], int, int)} bytes. Unpaired
+     * surrogates are encoded as '?', as {@link String#getBytes(java.nio.charset.Charset)} does.
+     *
+     * @return the number of bytes written.
+     */
+    static int encode(char[] src, int offset, int length, byte[] dest, int destOffset) {
+        final int end = offset + length;
+        int written = destOffset;
+        for (int i = offset; i < end; i++) {
+            final char c = src[i];
+            if (c < 0x80) {
+                dest[written++] = (byte) c;
+            } else if (c < 0x800) {
+                dest[written++] = (byte) (0xC0 | c >> 6);
+                dest[written++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src[i + 1])) {
+                    final int codePoint = Character.toCodePoint(c, src[++i]);
+                    dest[written++] = (byte) (0xF0 | codePoint >> 18);
+                    dest[written++] = (byte) (0x80 | (codePoint >> 12 & 0x3F));
+                    dest[written++] = (byte) (0x80 | (codePoint >> 6 & 0x3F));
+                    dest[written++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else {
+                    dest[written++] = '?';
+                }
+            } else {
+                dest[written++] = (byte) (0xE0 | c >> 12);
+                dest[written++] = (byte) (0x80 | (c >> 6 & 0x3F));
+                dest[written++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return written - destOffset;
+    }
+}
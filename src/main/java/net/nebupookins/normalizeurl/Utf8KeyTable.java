@@ -0,0 +1,296 @@
+package net.nebupookins.normalizeurl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * An open-addressing hash table of UTF-8 encoded keys, optionally each with a long value, which holds no objects per
+ * key. The keys are appended, each preceded by its length, to large byte array slabs, and each slot of the table is a
+ * single long packing the key's address in the slabs with 24 bits of its hash, which rule out all but one in 16
+ * million mismatches before any key has to be compared. Since none of these arrays hold references, the garbage
+ * collector never has to trace through them, however many keys there are.
+ *
+ * <p>Keys can only be added, never removed, so the slabs don't fragment. Instances are not thread safe; the public
+ * collections built on them stripe keys across several tables, each guarded by its own lock.</p>
+ */
+final class Utf8KeyTable {
+    private static final int MIN_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+    //Slabs start small, so that small tables stay small, and double in size up to the maximum.
+    private static final int MIN_SLAB_SIZE = 4 * 1024;
+    private static final int OFFSET_BITS = 20;
+    private static final int MAX_SLAB_SIZE = 1 << OFFSET_BITS;
+    private static final int SLAB_INDEX_BITS = 20;
+    private static final int ADDRESS_BITS = OFFSET_BITS + SLAB_INDEX_BITS;
+    private static final long ADDRESS_MASK = (1L << ADDRESS_BITS) - 1;
+    private static final int TAG_MASK = 0xFFFFFF;
+    private static final int MAX_SEGMENTS = 64;
+    private static final int MIN_SEGMENT_SIZE = 1024;
+
+    private static final ThreadLocal<Key> KEY = ThreadLocal.withInitial(Key::new);
+
+    //The tag of the key in each slot in the upper 24 bits, and its address in the lower 40; 0 for an empty slot.
+    private long[] slots;
+    //Null unless the table has values.
+    private long[] values;
+    private int size;
+    private byte[][] slabs = new byte[4][];
+    private int slabCount;
+    private int slabPosition;
+    private long slabBytes;
+    private final long[] fingerprint = new long[2];
+
+    /**
+     * The normalized form of a url as UTF-8, and its hash. Each thread has one, reused from one url to the next.
+     */
+    static final class Key {
+        byte[] bytes;
+        int length;
+        long hash;
+        private final long[] fingerprint = new long[2];
+    }
+
+    /**
+     * @return the calling thread's key, holding the normalized form of the url. Its bytes may be shared with the
+     * thread's normalization engine, so they must be used before anything else is normalized on the thread.
+     */
+    static Key key(UrlNormalizer normalizer, String url) {
+        final Key key = KEY.get();
+        if (normalizer instanceof PlannedUrlNormalizer) {
+            final NormalizationEngine engine = PlannedUrlNormalizer.engine();
+            key.length = engine.normalizeToUtf8(((PlannedUrlNormalizer) normalizer).plan, url);
+            key.bytes = engine.utf8Output();
+        } else {
+            key.bytes = normalizer.apply(url).getBytes(StandardCharsets.UTF_8);
+            key.length = key.bytes.length;
+        }
+        Murmur3.hash128(key.bytes, 0, key.length, key.fingerprint);
+        key.hash = key.fingerprint[0];
+        return key;
+    }
+
+    /**
+     * @return enough tables for keys to be spread across so that threads seldom contend for the same one, each
+     * presized so that together they hold expectedSize keys without growing.
+     */
+    static Utf8KeyTable[] segments(long expectedSize, boolean withValues) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative, but was " + expectedSize);
+        }
+        final int segmentCount =
+                (int) Math.min(MAX_SEGMENTS, Long.highestOneBit(Math.max(1, expectedSize / MIN_SEGMENT_SIZE)));
+        final Utf8KeyTable[] segments = new Utf8KeyTable[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Utf8KeyTable(expectedSize / segmentCount, withValues);
+        }
+        return segments;
+    }
+
+    /**
+     * @return the table in segments that the key belongs to. The top bits of the hash pick the segment, the bottom
+     * bits the slot within it and the bits in between the tag, so that the three are independent.
+     */
+    static Utf8KeyTable segment(Utf8KeyTable[] segments, Key key) {
+        final int bits = Integer.numberOfTrailingZeros(segments.length);
+        return bits == 0 ? segments[0] : segments[(int) (key.hash >>> (Long.SIZE - bits))];
+    }
+
+    private Utf8KeyTable(long expectedSize, boolean withValues) {
+        //Keep the table at most 3/4 full.
+        final long required = Math.max(MIN_CAPACITY, expectedSize + expectedSize / 3 + 1);
+        if (required > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Too many keys: " + expectedSize);
+        }
+        final int capacity = Integer.highestOneBit((int) required - 1) << 1;
+        slots = new long[capacity];
+        values = withValues ? new long[capacity] : null;
+    }
+
+    private static long tag(long hash) {
+        //Never 0, so that no slot holding a key is 0.
+        final long tag = hash >>> 32 & TAG_MASK;
+        return (tag == 0 ? 1 : tag) << ADDRESS_BITS;
+    }
+
+    /**
+     * @return the slot holding the key, or, if the table doesn't hold it, -1 minus the empty slot where it would go.
+     */
+    int find(Key key) {
+        final long[] slots = this.slots;
+        final int mask = slots.length - 1;
+        final long tag = tag(key.hash);
+        int slot = (int) key.hash & mask;
+        while (slots[slot] != 0) {
+            if ((slots[slot] & ~ADDRESS_MASK) == tag && keyEquals(slots[slot] & ADDRESS_MASK, key.bytes, key.length)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1 - slot;
+    }
+
+    /**
+     * Adds the key, which the table doesn't hold, with a value of 0.
+     *
+     * @param notFound what {@link #find(Key)} returned for the key.
+     * @return the slot the key was added in.
+     */
+    int insert(int notFound, Key key) {
+        int emptySlot = -1 - notFound;
+        if ((size + 1) * 4L > slots.length * 3L) {
+            grow();
+            emptySlot = -1 - find(key);
+        }
+        slots[emptySlot] = tag(key.hash) | store(key.bytes, key.length);
+        size++;
+        return emptySlot;
+    }
+
+    long getValue(int slot) {
+        return values[slot];
+    }
+
+    void setValue(int slot, long value) {
+        values[slot] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes taken up by the table's arrays.
+     */
+    long getMemoryUsage() {
+        return (long) slots.length * Long.BYTES * (values == null ? 1 : 2) + slabBytes;
+    }
+
+    /**
+     * Calls action with each key, decoded, and its value, or 0 if the table has no values.
+     */
+    void forEach(ObjLongConsumer<String> action) {
+        for (int slot = 0; slot < slots.length; slot++) {
+            if (slots[slot] != 0) {
+                final long address = slots[slot] & ADDRESS_MASK;
+                final byte[] slab = slab(address);
+                final int length = readLength(slab, offset(address));
+                final String key =
+                        new String(slab, offset(address) + lengthSize(length), length, StandardCharsets.UTF_8);
+                action.accept(key, values == null ? 0 : values[slot]);
+            }
+        }
+    }
+
+    private byte[] slab(long address) {
+        return slabs[(int) (address >>> OFFSET_BITS)];
+    }
+
+    private static int offset(long address) {
+        return (int) address & (MAX_SLAB_SIZE - 1);
+    }
+
+    private boolean keyEquals(long address, byte[] key, int keyLength) {
+        final byte[] slab = slab(address);
+        final int length = readLength(slab, offset(address));
+        if (length != keyLength) {
+            return false;
+        }
+        final int offset = offset(address) + lengthSize(length);
+        for (int i = 0; i < length; i++) {
+            if (slab[offset + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the key, preceded by its length, to the current slab, starting a new one if it doesn't fit. A key too
+     * long for a slab of the maximum size gets a slab of its own.
+     *
+     * @return the key's address.
+     */
+    private long store(byte[] key, int length) {
+        final int recordLength = lengthSize(length) + length;
+        if (slabCount == 0 || slabs[slabCount - 1].length - slabPosition < recordLength) {
+            if (slabCount == 1 << SLAB_INDEX_BITS) {
+                throw new IllegalStateException("Table is full");
+            }
+            final int previousSize = slabCount == 0 ? MIN_SLAB_SIZE / 2 : slabs[slabCount - 1].length;
+            final int slabSize = Math.max(recordLength, Math.min(MAX_SLAB_SIZE, previousSize * 2));
+            if (slabCount == slabs.length) {
+                final byte[][] grown = new byte[slabs.length * 2][];
+                System.arraycopy(slabs, 0, grown, 0, slabCount);
+                slabs = grown;
+            }
+            slabs[slabCount++] = new byte[slabSize];
+            slabPosition = 0;
+            slabBytes += slabSize;
+        }
+        final byte[] slab = slabs[slabCount - 1];
+        final long address = (long) (slabCount - 1) << OFFSET_BITS | slabPosition;
+        int position = slabPosition;
+        //The length, 7 bits at a time, least significant first, with the top bit set on all but the last byte.
+        int remaining = length;
+        while (remaining >= 0x80) {
+            slab[position++] = (byte) (remaining | 0x80);
+            remaining >>>= 7;
+        }
+        slab[position++] = (byte) remaining;
+        System.arraycopy(key, 0, slab, position, length);
+        slabPosition = position + length;
+        return address;
+    }
+
+    private static int readLength(byte[] slab, int offset) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = slab[offset++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return length;
+    }
+
+    private static int lengthSize(int length) {
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Doubles the number of slots. Slots only hold part of each key's hash, so each key is hashed again; presizing
+     * the table avoids that.
+     */
+    private void grow() {
+        if (slots.length == MAX_CAPACITY) {
+            throw new IllegalStateException("Table is full");
+        }
+        final long[] oldSlots = slots;
+        final long[] oldValues = values;
+        final int mask = oldSlots.length * 2 - 1;
+        slots = new long[oldSlots.length * 2];
+        values = oldValues == null ? null : new long[slots.length];
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                final long address = oldSlots[i] & ADDRESS_MASK;
+                final byte[] slab = slab(address);
+                final int length = readLength(slab, offset(address));
+                Murmur3.hash128(slab, offset(address) + lengthSize(length), length, fingerprint);
+                int slot = (int) fingerprint[0] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                if (values != null) {
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
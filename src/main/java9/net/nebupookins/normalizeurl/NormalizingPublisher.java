@@ -0,0 +1,194 @@
+package net.nebupookins.normalizeurl;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the normalized form of each url published by another publisher, or the reason it can't be normalized,
+ * in the same order. Normalization is done on the executor of an {@link AsyncUrlNormalizer}, never on the thread
+ * publishing the urls, and a url that can't be normalized doesn't end the stream.
+ *
+ * <p>Backpressure is honored both ways: no more results are published than subscribers request, and no more than a
+ * batch of urls, the batch size of the {@link AsyncUrlNormalizer}, is requested from upstream ahead of them, so a
+ * slow subscriber slows the source down rather than making urls pile up in memory. Each url that's ready when a
+ * subscriber asks for more is normalized in the same task, so scheduling is amortized over whole batches.</p>
+ *
+ * <p>Each subscriber gets its own subscription to the upstream publisher. The urls of one subscription are
+ * normalized one after the other; to spread a stream over several cores, split it into several streams.</p>
+ */
+public final class NormalizingPublisher implements Flow.Publisher<NormalizationResult> {
+    private final AsyncUrlNormalizer normalizer;
+    private final Flow.Publisher<String> urls;
+
+    /**
+     * @param normalizer the normalizer, executor and batch size to use.
+     * @param urls       the urls to normalize.
+     */
+    public NormalizingPublisher(AsyncUrlNormalizer normalizer, Flow.Publisher<String> urls) {
+        this.normalizer = normalizer;
+        this.urls = urls;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super NormalizationResult> subscriber) {
+        Objects.requireNonNull(subscriber);
+        urls.subscribe(new NormalizingSubscription(normalizer, subscriber));
+    }
+
+    /**
+     * Subscribes to the urls on behalf of a subscriber to the results. Every call to the downstream subscriber is made
+     * by {@link #run()}, which only ever runs on one thread at a time.
+     */
+    private static final class NormalizingSubscription
+            implements Flow.Subscriber<String>, Flow.Subscription, Runnable {
+        private final UrlNormalizer normalizer;
+        private final Executor executor;
+        private final int prefetch;
+        //Upstream is asked for more urls once this many have been published, rather than one by one.
+        private final int replenishThreshold;
+        private final Flow.Subscriber<? super NormalizationResult> downstream;
+        private final ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong requested = new AtomicLong();
+        //The number of times run() has been asked for since it last found nothing to do.
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile Flow.Subscription upstream;
+        private volatile boolean done;
+        private volatile Throwable error;
+        //Set if the subscriber breaks the rules, which ends the stream at once rather than after the queued urls.
+        private volatile Throwable invalidRequest;
+        private volatile boolean cancelled;
+        //Only touched by run().
+        private int consumed;
+        private boolean subscribed;
+
+        NormalizingSubscription(
+                AsyncUrlNormalizer normalizer, Flow.Subscriber<? super NormalizationResult> downstream) {
+            this.normalizer = normalizer.getNormalizer();
+            this.executor = normalizer.getExecutor();
+            this.prefetch = normalizer.getBatchSize();
+            this.replenishThreshold = prefetch - (prefetch >> 2);
+            this.downstream = downstream;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            schedule();
+        }
+
+        @Override
+        public void onNext(String url) {
+            queue.add(url);
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                invalidRequest = new IllegalArgumentException("Requested " + n + " results, which isn't positive");
+                upstream.cancel();
+            } else {
+                //Demand adds up, but saturates at Long.MAX_VALUE, which means unbounded.
+                requested.getAndAccumulate(n, (current, added) ->
+                        current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            upstream.cancel();
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /**
+         * Publishes as many results as there are both urls and demand for, then the end of the stream if it has been
+         * reached.
+         */
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!subscribed) {
+                    subscribed = true;
+                    downstream.onSubscribe(this);
+                    upstream.request(prefetch);
+                }
+                final long demand = requested.get();
+                long published = 0;
+                while (published != demand && !cancelled) {
+                    final String url = queue.poll();
+                    if (url == null) {
+                        break;
+                    }
+                    downstream.onNext(normalizer.tryApply(url));
+                    published++;
+                    if (++consumed == replenishThreshold) {
+                        consumed = 0;
+                        upstream.request(replenishThreshold);
+                    }
+                }
+                if (cancelled) {
+                    queue.clear();
+                    return;
+                }
+                if (invalidRequest != null) {
+                    terminate(invalidRequest);
+                    return;
+                }
+                if (done && queue.isEmpty()) {
+                    terminate(error);
+                    return;
+                }
+                if (published != 0 && demand != Long.MAX_VALUE) {
+                    requested.addAndGet(-published);
+                }
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Ends the stream, with an error unless error is null.
+         */
+        private void terminate(Throwable error) {
+            cancelled = true;
+            queue.clear();
+            if (error == null) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(error);
+            }
+        }
+    }
+}
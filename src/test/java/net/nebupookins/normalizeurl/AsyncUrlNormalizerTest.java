@@ -0,0 +1,88 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncUrlNormalizerTest {
+    @Test
+    public void testCompletesWithSameResultsAsApply() throws Exception {
+        final AsyncUrlNormalizer underTest = UrlNormalizer.semanticPreservingNormalizer().async();
+        assertThat(underTest.applyAsync("HTTP://Example.COM:80/bar/../%7Efoo%2a").get(),
+                is("http://example.com/~foo%2A"));
+        assertThat(underTest.tryApplyAsync("not a url").get().getError(), is(NormalizationError.NO_SCHEME));
+    }
+
+    @Test
+    public void testCompletesExceptionallyWhenUrlCannotBeNormalized() throws Exception {
+        final CompletableFuture<String> future = UrlNormalizer.semanticPreservingNormalizer().async()
+                .applyAsync("not a url");
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalArgumentException.class)));
+        }
+    }
+
+    @Test
+    public void testBatchesUrlsIntoFewTasks() throws Exception {
+        final AtomicInteger tasks = new AtomicInteger();
+        final ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            final AsyncUrlNormalizer underTest = new AsyncUrlNormalizer(
+                    UrlNormalizer.semanticPreservingNormalizer(),
+                    task -> {
+                        tasks.incrementAndGet();
+                        pool.execute(task);
+                    },
+                    100);
+            final List<CompletableFuture<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                futures.add(underTest.applyAsync("HTTP://Example.COM/" + i + "/../%7e"));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertThat(futures.get(i).get(), is("http://example.com/~"));
+            }
+            assertTrue("Expected far fewer tasks than urls, but there were " + tasks.get(), tasks.get() < 1_000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailsFuturesWhenExecutorRejectsWork() throws Exception {
+        final AsyncUrlNormalizer underTest = new AsyncUrlNormalizer(
+                UrlNormalizer.semanticPreservingNormalizer(),
+                task -> {
+                    throw new RejectedExecutionException("shut down");
+                },
+                10);
+        try {
+            underTest.applyAsync("http://example.com/").get();
+            fail();
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RejectedExecutionException.class)));
+        }
+    }
+
+    @Test
+    public void testNormalizesWholeBatches() throws Exception {
+        final String[] urls = {"HTTP://Example.COM/", "not a url"};
+        final BatchResult result = UrlNormalizer.semanticPreservingNormalizer().async().applyAllAsync(urls).get();
+        assertThat(result.get(0), is("http://example.com/"));
+        assertThat(result.getError(1), is(NormalizationError.NO_SCHEME));
+    }
+}
@@ -0,0 +1,88 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class BatchResultTest {
+    private static String[] batch(int size) {
+        final String[] urls = new String[size];
+        for (int i = 0; i < size; i++) {
+            urls[i] = i % 100 == 99 ? "not a url " + i : "HTTP://Example.COM:80/" + i + "/../%7e" + i;
+        }
+        return urls;
+    }
+
+    private static void assertMatchesApply(UrlNormalizer normalizer, String[] urls, BatchResult result) {
+        assertThat(result.size(), is(urls.length));
+        int failures = 0;
+        for (int i = 0; i < urls.length; i++) {
+            if (i % 100 == 99) {
+                assertThat(result.isSuccess(i), is(false));
+                assertThat(result.get(i), is(nullValue()));
+                assertThat(result.getFailure(i), is(instanceOf(IllegalArgumentException.class)));
+                assertThat(result.getError(i), is(NormalizationError.NO_SCHEME));
+                failures++;
+            } else {
+                assertThat(result.isSuccess(i), is(true));
+                assertThat(result.get(i), is(normalizer.apply(urls[i])));
+            }
+        }
+        assertThat(result.getFailureCount(), is(failures));
+    }
+
+    @Test
+    public void testApplyAllRecordsFailuresWithoutAbortingTheBatch() {
+        final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+        final String[] urls = batch(1000);
+        assertMatchesApply(normalizer, urls, normalizer.applyAll(urls));
+        assertMatchesApply(normalizer, urls, normalizer.applyAll(Arrays.asList(urls)));
+    }
+
+    @Test
+    public void testApplyAllInParallelMatchesSequentialResult() {
+        final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+        final String[] urls = batch(10_000);
+        assertMatchesApply(normalizer, urls, normalizer.applyAllInParallel(urls));
+        final ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            assertMatchesApply(normalizer, urls, normalizer.applyAllInParallel(urls, pool));
+            assertMatchesApply(normalizer, urls, normalizer.applyAllInParallel(Arrays.asList(urls), pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testApplyAllToStreamsMatchesApply() {
+        final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+        final String[] urls = batch(10_000);
+        final List<NormalizationResult> sequential =
+                normalizer.applyAll(Arrays.stream(urls)).collect(Collectors.toList());
+        final List<NormalizationResult> parallel =
+                normalizer.applyAllInParallel(Arrays.stream(urls)).collect(Collectors.toList());
+        for (int i = 0; i < urls.length; i++) {
+            if (i % 100 == 99) {
+                assertThat(sequential.get(i).getError(), is(NormalizationError.NO_SCHEME));
+                assertThat(parallel.get(i).getError(), is(NormalizationError.NO_SCHEME));
+            } else {
+                assertThat(sequential.get(i).get(), is(normalizer.apply(urls[i])));
+                assertThat(parallel.get(i).get(), is(normalizer.apply(urls[i])));
+            }
+        }
+    }
+
+    @Test
+    public void testToArrayReturnsACopy() {
+        final BatchResult result = UrlNormalizer.semanticPreservingNormalizer().applyAll(batch(3));
+        result.toArray()[0] = "changed";
+        assertThat(result.get(0), is("http://example.com/~0"));
+        assertThat(result.toArray(), is(new String[]{result.get(0), result.get(1), result.get(2)}));
+    }
+}
@@ -0,0 +1,84 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ByteNormalizationTest {
+    private static final String[] URLS = {
+            "HTTP://Example.COM:80/bar/../%7Efoo%2a",
+            "http://example.com/caf\u00E9/\u65E5\u672C?q=\uD83D\uDE00#fr%61g",
+            "https://User@Example.COM/%7e?%41=%2a",
+    };
+
+    /**
+     * A normalizer that only implements {@link UrlNormalizer#apply(String)}, to exercise the default byte methods.
+     */
+    private static final UrlNormalizer STRING_ONLY = UrlNormalizer.semanticPreservingNormalizer()::apply;
+
+    private static String viaByteArray(UrlNormalizer normalizer, String url) {
+        final byte[] padded = ("xx" + url + "yy").getBytes(StandardCharsets.UTF_8);
+        final byte[] dest = new byte[300];
+        final int written = normalizer.apply(padded, 2, padded.length - 4, dest, 5);
+        return new String(dest, 5, written, StandardCharsets.UTF_8);
+    }
+
+    private static String viaByteBuffer(UrlNormalizer normalizer, String url, boolean direct) {
+        final byte[] encoded = url.getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer src = direct ? ByteBuffer.allocateDirect(encoded.length) : ByteBuffer.allocate(encoded.length);
+        src.put(encoded).flip();
+        final ByteBuffer dest = direct ? ByteBuffer.allocateDirect(300) : ByteBuffer.allocate(300);
+        dest.put((byte) 'x');
+        final int written = normalizer.apply(src, dest);
+        assertThat(src.remaining(), is(0));
+        assertThat(dest.position(), is(1 + written));
+        dest.flip().position(1);
+        final byte[] result = new byte[dest.remaining()];
+        dest.get(result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testByteOverloadsMatchStringNormalization() {
+        for (UrlNormalizer normalizer : Arrays.asList(UrlNormalizer.semanticPreservingNormalizer(), STRING_ONLY)) {
+            for (String url : URLS) {
+                final String expected = normalizer.apply(url);
+                assertThat(viaByteArray(normalizer, url), is(expected));
+                assertThat(viaByteBuffer(normalizer, url, false), is(expected));
+                assertThat(viaByteBuffer(normalizer, url, true), is(expected));
+            }
+        }
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void testThrowsWhenDestinationIsTooSmall() {
+        final byte[] url = "http://example.com/".getBytes(StandardCharsets.UTF_8);
+        UrlNormalizer.semanticPreservingNormalizer().apply(url, 0, url.length, new byte[url.length - 1], 0);
+    }
+
+    @Test
+    public void testLeavesBuffersUntouchedOnFailure() {
+        final ByteBuffer src = ByteBuffer.wrap("http://example.com/".getBytes(StandardCharsets.UTF_8));
+        final ByteBuffer dest = ByteBuffer.allocate(4);
+        try {
+            UrlNormalizer.semanticPreservingNormalizer().apply(src, dest);
+        } catch (BufferOverflowException expected) {
+            assertThat(src.position(), is(0));
+            assertThat(dest.position(), is(0));
+            return;
+        }
+        throw new AssertionError("Expected a BufferOverflowException");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsMalformedUtf8() {
+        final byte[] url = {'h', 't', 't', 'p', ':', '/', '/', 'a', '/', (byte) 0xC3};
+        UrlNormalizer.semanticPreservingNormalizer().apply(url, 0, url.length, new byte[100], 0);
+    }
+}
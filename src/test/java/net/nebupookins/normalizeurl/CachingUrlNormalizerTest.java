@@ -0,0 +1,123 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CachingUrlNormalizerTest {
+    @Test
+    public void testReturnsSameResultsAsDelegate() {
+        final UrlNormalizer delegate = UrlNormalizer.semanticPreservingNormalizer();
+        final CachingUrlNormalizer underTest = delegate.withCache(100);
+        for (int i = 0; i < 3; i++) {
+            assertThat(underTest.apply("HTTP://Example.COM:80/bar/../%7Efoo%2a"), is("http://example.com/~foo%2A"));
+        }
+        assertThat(underTest.getMissCount(), is(1L));
+        assertThat(underTest.getHitCount(), is(2L));
+    }
+
+    @Test
+    public void testNeverExceedsMaximumSize() {
+        final CachingUrlNormalizer underTest = new CachingUrlNormalizer(url -> url, 100);
+        for (int i = 0; i < 10_000; i++) {
+            underTest.apply("http://example.com/" + i);
+            assertTrue(underTest.size() <= 100);
+        }
+        assertThat(underTest.getEvictionCount(), is(10_000L - 100));
+    }
+
+    @Test
+    public void testKeepsRecurringUrlsWhileOneOffUrlsPassThrough() {
+        final AtomicInteger calls = new AtomicInteger();
+        final CachingUrlNormalizer underTest = new CachingUrlNormalizer(url -> {
+            calls.incrementAndGet();
+            return url;
+        }, 64);
+        int oneOff = 0;
+        for (int round = 0; round < 100; round++) {
+            if (round == 1) {
+                calls.set(0);
+            }
+            for (int i = 0; i < 10; i++) {
+                underTest.apply("http://example.com/popular/" + i);
+            }
+            for (int i = 0; i < 40; i++) {
+                underTest.apply("http://example.com/one-off/" + oneOff++);
+            }
+        }
+        //Every one-off url is a miss, but after the first round none of the popular ones are.
+        assertThat(calls.get(), is(99 * 40));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDoesNotCacheFailures() {
+        final CachingUrlNormalizer underTest = UrlNormalizer.semanticPreservingNormalizer().withCache(10);
+        try {
+            underTest.apply("not a url");
+        } catch (IllegalArgumentException e) {
+            assertThat(underTest.size(), is(0));
+        }
+        underTest.apply("not a url");
+    }
+
+    @Test
+    public void testTryApplySharesTheCacheAndReportsTheDelegatesErrors() {
+        final UrlNormalizer delegate = UrlNormalizer.semanticPreservingNormalizer();
+        final CachingUrlNormalizer underTest = delegate.withCache(10);
+        assertThat(underTest.tryApply("HTTP://Example.COM/").get(), is("http://example.com/"));
+        assertThat(underTest.apply("HTTP://Example.COM/"), is("http://example.com/"));
+        assertThat(underTest.getHitCount(), is(1L));
+
+        assertThat(underTest.tryApply("http://example.com/%zz").getError(),
+                is(NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET));
+        assertThat(underTest.tryApply("not a url").getError(), is(NormalizationError.NO_SCHEME));
+        assertThat(underTest.size(), is(1));
+    }
+
+    @Test
+    public void testForwardsEverythingElseToTheDelegate() {
+        final UrlNormalizer delegate = UrlNormalizer.semanticPreservingNormalizer();
+        final CachingUrlNormalizer underTest = delegate.withCache(10);
+        final String url = "HTTP://Example.COM:80/bar/../%7Efoo%2a";
+        assertThat(underTest.fingerprint128(url), is(delegate.fingerprint128(url)));
+        assertThat(underTest.fingerprint64(url), is(delegate.fingerprint64(url)));
+        assertThat(underTest.parse(url), is(delegate.parse(url)));
+        assertTrue(underTest.equivalent(url, "http://example.com/~foo%2A"));
+        assertThat(underTest.size(), is(0));
+    }
+
+    @Test
+    public void testIsSafeToShareBetweenThreads() throws Exception {
+        final UrlNormalizer delegate = UrlNormalizer.semanticPreservingNormalizer();
+        final CachingUrlNormalizer underTest = delegate.withCache(50);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        final String url = "HTTP://Example.COM/" + ((i * 31 + seed) % 200) + "/%7e";
+                        assertThat(underTest.apply(url), is(delegate.apply(url)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(underTest.size() <= 50);
+        assertThat(underTest.getHitCount() + underTest.getMissCount(), is(8L * 20_000));
+    }
+}
@@ -0,0 +1,106 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class HostCanonicalizerTest {
+    private static void assertCanonicalizes(String host, String canonical) {
+        assertThat(host, HostCanonicalizer.canonicalize(host), is(canonical));
+        final char[] chars = canonical.toCharArray();
+        if (HostCanonicalizer.isCanonical(chars, 0, chars.length)) {
+            assertThat(canonical, HostCanonicalizer.canonicalize(canonical), is(canonical));
+        }
+    }
+
+    @Test
+    public void testLowercasesAsciiRegardlessOfLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertCanonicalizes("WWW.EXAMPLE.COM", "www.example.com");
+            assertCanonicalizes("LINKEDIN.COM", "linkedin.com");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void testConvertsInternationalizedDomainNamesToAscii() {
+        assertCanonicalizes("B\u00FCcher.example", "xn--bcher-kva.example");
+        assertCanonicalizes("b%C3%BCcher.example", "xn--bcher-kva.example");
+        assertCanonicalizes("XN--BCHER-KVA.example", "xn--bcher-kva.example");
+        assertCanonicalizes("\u4F8B\u3002\u30C6\u30B9\u30C8", "xn--fsq.xn--zckzah");
+    }
+
+    @Test
+    public void testLeavesHexDigitsOfTripletsAsTheyAre() {
+        assertCanonicalizes("A%2FB", "a%2Fb");
+        assertCanonicalizes("A%2fB", "a%2fb");
+        assertCanonicalizes("[V1.A%2F]", "[v1.a%2F]");
+    }
+
+    @Test
+    public void testRemovesTrailingDot() {
+        assertCanonicalizes("example.com.", "example.com");
+        assertCanonicalizes("localhost.", "localhost");
+        assertCanonicalizes(".", ".");
+        assertCanonicalizes("a..", "a");
+        assertCanonicalizes("..", ".");
+        assertCanonicalizes("b\u00FCcher.example..", "xn--bcher-kva.example");
+        assertCanonicalizes("b\u00FCcher.example\u3002", "xn--bcher-kva.example");
+    }
+
+    @Test
+    public void testWritesIpv4AddressesAsFourDecimalParts() {
+        assertCanonicalizes("127.0.0.1", "127.0.0.1");
+        assertCanonicalizes("0x7f.1", "127.0.0.1");
+        assertCanonicalizes("0177.0.0.01", "127.0.0.1");
+        assertCanonicalizes("2130706433", "127.0.0.1");
+        assertCanonicalizes("0X7F000001", "127.0.0.1");
+        assertCanonicalizes("192.168.257", "192.168.1.1");
+        assertCanonicalizes("127.0.0.1.", "127.0.0.1");
+        assertCanonicalizes("256.0.0.1", "256.0.0.1");
+        assertCanonicalizes("1.2.3.4.5", "1.2.3.4.5");
+        assertCanonicalizes("4294967296", "4294967296");
+        assertCanonicalizes("09.1.1.1", "09.1.1.1");
+        assertCanonicalizes("1.example", "1.example");
+    }
+
+    @Test
+    public void testWritesIpv6AddressesAsInRfc5952() {
+        assertCanonicalizes("[2001:DB8:0:0:0:0:0:1]", "[2001:db8::1]");
+        assertCanonicalizes("[2001:0db8:0000:0000:0001:0000:0000:0001]", "[2001:db8::1:0:0:1]");
+        assertCanonicalizes("[2001:db8:0:1:1:1:1:1]", "[2001:db8:0:1:1:1:1:1]");
+        assertCanonicalizes("[0:0:0:0:0:0:0:1]", "[::1]");
+        assertCanonicalizes("[::]", "[::]");
+        assertCanonicalizes("[1::]", "[1::]");
+        assertCanonicalizes("[::ffff:192.0.2.1]", "[::ffff:192.0.2.1]");
+        assertCanonicalizes("[::FFFF:C000:0201]", "[::ffff:192.0.2.1]");
+        assertCanonicalizes("[::192.0.2.1]", "[::c000:201]");
+    }
+
+    @Test
+    public void testOnlyLowercasesInvalidIpLiterals() {
+        assertCanonicalizes("[1:2:3:4:5:6:7:8:9]", "[1:2:3:4:5:6:7:8:9]");
+        assertCanonicalizes("[1::2::3]", "[1::2::3]");
+        assertCanonicalizes("[:1]", "[:1]");
+        assertCanonicalizes("[1:]", "[1:]");
+        assertCanonicalizes("[12345::]", "[12345::]");
+        assertCanonicalizes("[FE80::1%25ETH0]", "[fe80::1%25eth0]");
+        assertCanonicalizes("[V1.X]", "[v1.x]");
+    }
+
+    @Test
+    public void testIsCanonicalOnlyForLowercaseDomainNames() {
+        for (String host : new String[]{"example.com", "a-b.example", "xn--bcher-kva.example", "a1.b2"}) {
+            assertThat(host, HostCanonicalizer.isCanonical(host.toCharArray(), 0, host.length()), is(true));
+        }
+        for (String host : new String[]{"", "Example.com", "example.com.", "1.2.3.4", "a.0x1", "[::1]", "\u00FC"}) {
+            assertThat(host, HostCanonicalizer.isCanonical(host.toCharArray(), 0, host.length()), is(false));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+import java.lang.management.ManagementFactory;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentedUrlNormalizerTest {
+    @Test
+    public void testReturnsSameResultsAsDelegate() {
+        final InstrumentedUrlNormalizer underTest = UrlNormalizer.semanticPreservingNormalizer().withMetrics();
+        assertThat(underTest.apply("HTTP://Example.COM:80/bar/../%7Efoo%2a"), is("http://example.com/~foo%2A"));
+        assertThat(underTest.apply("http://example.com/"), is("http://example.com/"));
+
+        final NormalizationMetrics metrics = underTest.getMetrics();
+        assertThat(metrics.getCount(), is(2L));
+        assertThat(metrics.getFailureCount(), is(0L));
+        assertTrue(metrics.getLatencyNanos(50) <= metrics.getLatencyNanos(100));
+        assertTrue(metrics.getLatencyNanos(100) >= metrics.getMaxLatencyNanos());
+        assertTrue(metrics.getThroughputPerSecond() > 0);
+    }
+
+    @Test
+    public void testCountsFailuresByCause() {
+        final InstrumentedUrlNormalizer underTest = UrlNormalizer.semanticPreservingNormalizer().withMetrics();
+        for (String url : new String[]{"not a url", "also not a url", "http://example.com/%zz"}) {
+            try {
+                underTest.apply(url);
+                fail("Expected " + url + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                //Expected.
+            }
+        }
+
+        final NormalizationMetrics metrics = underTest.getMetrics();
+        assertThat(metrics.getCount(), is(3L));
+        assertThat(metrics.getFailureCount(), is(3L));
+        assertThat(metrics.getFailureCounts().get(NormalizationError.NO_SCHEME), is(2L));
+        assertThat(metrics.getFailureCounts().get(NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET), is(1L));
+    }
+
+    @Test
+    public void testInstrumentsTryApplyAndForwardsEverythingElse() {
+        final UrlNormalizer delegate = UrlNormalizer.semanticPreservingNormalizer();
+        final InstrumentedUrlNormalizer underTest = delegate.withMetrics();
+        assertThat(underTest.tryApply("http://example.com/%zz").getError(),
+                is(NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET));
+        assertThat(underTest.tryApply("HTTP://example.com").get(), is("http://example.com/"));
+        assertThat(underTest.getMetrics().getCount(), is(2L));
+        assertThat(underTest.getMetrics().getFailureCounts().get(NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET),
+                is(1L));
+        assertThat(underTest.getMetrics().getChangedCounts().get(Normalization.LOWERCASE_SCHEME_AND_HOST), is(1L));
+
+        final String url = "HTTP://Example.COM:80/bar/../%7Efoo%2a";
+        assertThat(underTest.fingerprint128(url), is(delegate.fingerprint128(url)));
+        assertThat(underTest.fingerprint64(url), is(delegate.fingerprint64(url)));
+        assertThat(underTest.parse(url), is(delegate.parse(url)));
+        assertTrue(underTest.equivalent(url, "http://example.com/~foo%2A"));
+        assertThat(underTest.getMetrics().getCount(), is(2L));
+    }
+
+    @Test
+    public void testCountsFailuresOfOtherNormalizersAsOther() {
+        final InstrumentedUrlNormalizer underTest = new InstrumentedUrlNormalizer(url -> {
+            throw new IllegalStateException(url);
+        });
+        assertThat(underTest.tryApply("http://example.com/").getError(), is(NormalizationError.OTHER));
+        try {
+            underTest.apply("http://example.com/");
+            fail("Expected the delegate's exception");
+        } catch (IllegalStateException e) {
+            //Expected.
+        }
+        assertThat(underTest.getMetrics().getFailureCounts().get(NormalizationError.OTHER), is(2L));
+    }
+
+    @Test
+    public void testCountsUrlsChangedByEachNormalization() {
+        final InstrumentedUrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REMOVE_FRAGMENT, Normalization.SORT_QUERY_PARAMETERS)
+                .build()
+                .withMetrics();
+        underTest.apply("HTTP://example.com:80/a/./b?b=1&a=2#top");
+        underTest.apply("http://example.com/%7e?a=1&b=2");
+        underTest.apply("http://example.com/");
+
+        final NormalizationMetrics metrics = underTest.getMetrics();
+        assertThat(metrics.getChangedCounts().get(Normalization.LOWERCASE_SCHEME_AND_HOST), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.REMOVE_DEFAULT_PORT), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.REMOVE_DOT_SEGMENTS), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.REMOVE_FRAGMENT), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.SORT_QUERY_PARAMETERS), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.DECODE_UNRESERVED_CHARACTERS), is(1L));
+        assertThat(metrics.getChangedCounts().get(Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS), is(0L));
+        assertThat(metrics.getChangedCounts().get(Normalization.NORMALIZE_EMPTY_PATH), is(0L));
+    }
+
+    @Test
+    public void testOnlyCountsChangesForBuiltInNormalizers() {
+        final InstrumentedUrlNormalizer underTest = new InstrumentedUrlNormalizer(String::toLowerCase);
+        assertThat(underTest.apply("HTTP://EXAMPLE.COM/"), is("http://example.com/"));
+        assertThat(underTest.getMetrics().getCount(), is(1L));
+        assertTrue(underTest.getMetrics().getChangedCounts().isEmpty());
+    }
+
+    @Test
+    public void testExposesMetricsThroughJmx() throws Exception {
+        final InstrumentedUrlNormalizer underTest = UrlNormalizer.semanticPreservingNormalizer().withMetrics();
+        underTest.apply("HTTP://example.com/");
+        final ObjectName name = underTest.registerMBean(
+                "net.nebupookins.normalizeurl:type=Normalizer,name=InstrumentedUrlNormalizerTest");
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertThat(server.getAttribute(name, "Count"), is((Object) 1L));
+            assertThat(server.getAttribute(name, "FailureCount"), is((Object) 0L));
+            assertTrue(((TabularData) server.getAttribute(name, "FailureCounts")).isEmpty());
+            assertTrue((Long) server.getAttribute(name, "MaxLatencyNanos") > 0);
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testHistogramPercentilesAreWithinBucketWidth() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        final long[] snapshot = histogram.snapshot();
+        final long median = LatencyHistogram.valueAtPercentile(snapshot, 50);
+        assertTrue(median >= 50_000 && median <= 50_000 * 1.04);
+        final long p99 = LatencyHistogram.valueAtPercentile(snapshot, 99);
+        assertTrue(p99 >= 99_000 && p99 <= 99_000 * 1.04);
+        assertThat(histogram.getMax(), is(100_000L));
+        final double mean = LatencyHistogram.mean(snapshot);
+        assertTrue(Math.abs(mean - 50_000.5) < 50_000 * 0.02);
+    }
+}
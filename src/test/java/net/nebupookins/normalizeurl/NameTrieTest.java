@@ -0,0 +1,45 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class NameTrieTest {
+    private static boolean contains(NameTrie trie, String name) {
+        final char[] chars = ("&" + name + "=").toCharArray();
+        return trie.contains(chars, 1, chars.length - 1);
+    }
+
+    @Test
+    public void testMatchesNamesExactly() {
+        final NameTrie trie = new NameTrie(Arrays.asList("fbclid", "gclid", "g", "_ga"));
+        for (String name : new String[]{"fbclid", "gclid", "g", "_ga"}) {
+            assertThat(name, contains(trie, name), is(true));
+        }
+        for (String name : new String[]{"", "fbclid2", "fbcli", "gc", "_g", "Fbclid", "x"}) {
+            assertThat(name, contains(trie, name), is(false));
+        }
+    }
+
+    @Test
+    public void testMatchesPrefixes() {
+        final NameTrie trie = new NameTrie(Arrays.asList("utm_*", "utm_source"));
+        assertThat(contains(trie, "utm_"), is(true));
+        assertThat(contains(trie, "utm_source"), is(true));
+        assertThat(contains(trie, "utm_anything"), is(true));
+        assertThat(contains(trie, "utm"), is(false));
+        assertThat(contains(new NameTrie(Collections.singleton("*")), ""), is(true));
+    }
+
+    @Test
+    public void testEmptyTrieMatchesNothing() {
+        final NameTrie trie = new NameTrie(Collections.emptySet());
+        assertThat(trie.isEmpty(), is(true));
+        assertThat(contains(trie, ""), is(false));
+        assertThat(contains(trie, "a"), is(false));
+    }
+}
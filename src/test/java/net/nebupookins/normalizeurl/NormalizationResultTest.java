@@ -0,0 +1,100 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.net.MalformedURLException;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NormalizationResultTest {
+    private final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+
+    private static RuntimeException thrownBy(UrlNormalizer normalizer, String url) {
+        try {
+            normalizer.apply(url);
+        } catch (RuntimeException e) {
+            return e;
+        }
+        fail("Expected " + url + " to be rejected");
+        return null;
+    }
+
+    @Test
+    public void testSucceedsWithSameResultAsApply() {
+        final NormalizationResult result = normalizer.tryApply("HTTP://Example.COM:80/bar/../%7Efoo%2a");
+        assertThat(result.isSuccess(), is(true));
+        assertThat(result.get(), is("http://example.com/~foo%2A"));
+        assertThat(result.getOrThrow(), is("http://example.com/~foo%2A"));
+        assertThat(result.getError(), is(nullValue()));
+        assertThat(result.getErrorOffset(), is(-1));
+        assertThat(result.toException(), is(nullValue()));
+    }
+
+    @Test
+    public void testReportsErrorAndOffset() {
+        assertFailure("not a url", NormalizationError.NO_SCHEME, 3);
+        assertFailure("http://[::1/", NormalizationError.UNTERMINATED_IP_LITERAL, 7);
+        assertFailure("http://[::1]x/", NormalizationError.UNEXPECTED_CHARACTER_AFTER_IP_LITERAL, 12);
+        assertFailure("http://example.com:8o/", NormalizationError.INVALID_PORT, 20);
+        assertFailure("http://example.com:65536/", NormalizationError.PORT_OUT_OF_RANGE, 23);
+        assertFailure("http://example.com/100%", NormalizationError.TRUNCATED_PERCENT_ENCODED_TRIPLET, 22);
+        assertFailure("http://example.com/a?b=%zz&c=%4", NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET, 23);
+    }
+
+    private void assertFailure(String url, NormalizationError error, int errorOffset) {
+        final NormalizationResult result = normalizer.tryApply(url);
+        assertThat(url, result.isSuccess(), is(false));
+        assertThat(url, result.get(), is(nullValue()));
+        assertThat(url, result.getError(), is(error));
+        assertThat(url, result.getErrorOffset(), is(errorOffset));
+        final RuntimeException expected = thrownBy(normalizer, url);
+        assertThat(url, result.toException().getClass(), is(equalTo((Object) expected.getClass())));
+        assertThat(url, result.toException().getMessage(), is(expected.getMessage()));
+    }
+
+    @Test
+    public void testReportsSplittingErrorsAsMalformedUrls() {
+        final RuntimeException exception = normalizer.tryApply("not a url").toException();
+        assertThat(exception, is(instanceOf(IllegalArgumentException.class)));
+        assertThat(exception.getCause(), is(instanceOf(MalformedURLException.class)));
+        try {
+            normalizer.tryApply("not a url").getOrThrow();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getCause(), is(instanceOf(MalformedURLException.class)));
+        }
+    }
+
+    @Test
+    public void testRepairModeSucceedsWhereStrictModeFails() {
+        final UrlNormalizer lenient = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REPAIR_INVALID_CHARACTERS)
+                .build();
+        final NormalizationResult result = lenient.tryApply("http://example.com/100%");
+        assertThat(result.isSuccess(), is(true));
+        assertThat(result.get(), is("http://example.com/100%25"));
+    }
+
+    @Test
+    public void testDefaultImplementationWrapsThrownException() {
+        final IllegalStateException thrown = new IllegalStateException("nope");
+        final UrlNormalizer throwing = url -> {
+            throw thrown;
+        };
+        final NormalizationResult result = throwing.tryApply("http://example.com/");
+        assertThat(result.isSuccess(), is(false));
+        assertThat(result.getError(), is(NormalizationError.OTHER));
+        assertThat(result.getErrorOffset(), is(-1));
+        assertThat(result.toException(), is(sameInstance((RuntimeException) thrown)));
+    }
+
+    @Test
+    public void testRecoversAfterFailure() {
+        assertThat(normalizer.tryApply("http://example.com/%zz").isSuccess(), is(false));
+        assertThat(normalizer.tryApply("http://example.com/%7e").get(), is("http://example.com/~"));
+        assertThat(normalizer.apply("http://example.com/%7e"), is("http://example.com/~"));
+    }
+}
@@ -0,0 +1,130 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NormalizedUrlSetTest {
+    @Test
+    public void testAddsEachNormalizedUrlOnce() {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(UrlNormalizer.semanticPreservingNormalizer(), 10);
+        assertThat(underTest.addIfAbsent("HTTP://Example.COM:80/bar/../%7Efoo%2a"), is(true));
+        assertThat(underTest.addIfAbsent("http://example.com/~foo%2A"), is(false));
+        assertThat(underTest.addIfAbsent("http://example.com/~foo"), is(true));
+        assertThat(underTest.contains("http://EXAMPLE.com/%7efoo"), is(true));
+        assertThat(underTest.contains("http://example.com/bar"), is(false));
+        assertThat(underTest.size(), is(2L));
+
+        final Set<String> urls = new HashSet<>();
+        underTest.forEach(urls::add);
+        assertThat(urls, is(new HashSet<>(Arrays.asList("http://example.com/~foo%2A", "http://example.com/~foo"))));
+    }
+
+    @Test
+    public void testGrowsPastExpectedSize() {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(UrlNormalizer.semanticPreservingNormalizer(), 0);
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(underTest.addIfAbsent("http://example.com/" + i), is(true));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(underTest.addIfAbsent("HTTP://EXAMPLE.COM/" + i), is(false));
+        }
+        assertThat(underTest.size(), is(100_000L));
+        assertThat(underTest.contains("http://example.com/100000"), is(false));
+    }
+
+    @Test
+    public void testTakesLittleMoreMemoryThanTheUrlsThemselves() {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(UrlNormalizer.semanticPreservingNormalizer(), 100_000);
+        long urlBytes = 0;
+        for (int i = 0; i < 100_000; i++) {
+            final String url = "http://example.com/page/" + i;
+            underTest.addIfAbsent(url);
+            urlBytes += url.length();
+        }
+        assertTrue(underTest.getMemoryUsage() < urlBytes + 100_000 * 32);
+    }
+
+    @Test
+    public void testHoldsUrlsOfAnyLength() {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(UrlNormalizer.semanticPreservingNormalizer(), 10);
+        final StringBuilder path = new StringBuilder();
+        for (int length : new int[]{0, 127, 128, 16_384, 2 * 1024 * 1024}) {
+            while (path.length() < length) {
+                path.append('a');
+            }
+            final String url = "http://example.com/" + path;
+            assertThat(underTest.addIfAbsent(url), is(true));
+            assertThat(underTest.contains(url), is(true));
+        }
+        final Set<Integer> lengths = new HashSet<>();
+        underTest.forEach(url -> lengths.add(url.length() - "http://example.com/".length()));
+        assertThat(lengths, is(new HashSet<>(Arrays.asList(0, 127, 128, 16_384, 2 * 1024 * 1024))));
+    }
+
+    @Test
+    public void testWorksWithAnyNormalizer() {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(url -> url.toLowerCase(Locale.ROOT), 10);
+        assertThat(underTest.addIfAbsent("http://example.com/\u00C9"), is(true));
+        assertThat(underTest.addIfAbsent("HTTP://EXAMPLE.COM/\u00E9"), is(false));
+    }
+
+    @Test
+    public void testAddsConcurrently() throws Exception {
+        final NormalizedUrlSet underTest = new NormalizedUrlSet(UrlNormalizer.semanticPreservingNormalizer(), 10_000);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Integer>> added = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                added.add(executor.submit(() -> {
+                    int count = 0;
+                    for (int i = 0; i < 50_000; i++) {
+                        if (underTest.addIfAbsent("http://example.com/" + i % 20_000)) {
+                            count++;
+                        }
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : added) {
+                total += future.get();
+            }
+            assertThat(total, is(20_000));
+            assertThat(underTest.size(), is(20_000L));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapKeepsAValuePerNormalizedUrl() {
+        final NormalizedUrlLongMap underTest =
+                new NormalizedUrlLongMap(UrlNormalizer.semanticPreservingNormalizer(), 0);
+        assertThat(underTest.putIfAbsent("http://example.com/%7e", 1), is(true));
+        assertThat(underTest.putIfAbsent("http://example.com/~", 2), is(false));
+        assertThat(underTest.getOrDefault("HTTP://example.com/~", -1), is(1L));
+        assertThat(underTest.put("http://example.com/~", 3), is(false));
+        assertThat(underTest.getOrDefault("http://example.com/~", -1), is(3L));
+        assertThat(underTest.getOrDefault("http://example.com/x", -1), is(-1L));
+        assertThat(underTest.containsKey("http://example.com/x"), is(false));
+
+        for (int i = 0; i < 10_000; i++) {
+            underTest.addTo("http://example.com/" + i % 100, 1);
+        }
+        assertThat(underTest.size(), is(101L));
+        assertThat(underTest.getOrDefault("http://example.com/42", -1), is(100L));
+
+        final Map<String, Long> entries = new HashMap<>();
+        underTest.forEach(entries::put);
+        assertThat(entries.size(), is(101));
+        assertThat(entries.get("http://example.com/~"), is(3L));
+    }
+}
@@ -0,0 +1,113 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class NormalizedUrlTest {
+    private static final String[] URLS = {
+            "HTTP://User@Example.COM:80/bar/../%7Efoo%2a?Q=%7e#Frag%2a",
+            "http://example.com",
+            "https://example.com:8443/a/b/?",
+            "mailto:someone@example.com",
+            "file:///tmp/x#",
+            "http://example.com/a #f",
+            "http://example.com/a ?utm_source=x",
+    };
+
+    private static String join(NormalizedUrl url) {
+        final StringBuilder joined = new StringBuilder(url.getScheme()).append(':');
+        if (url.getHost().isPresent()) {
+            joined.append("//");
+            url.getUserInfo().ifPresent(userInfo -> joined.append(userInfo).append('@'));
+            joined.append(url.getHost().get());
+            url.getPort().ifPresent(port -> joined.append(':').append(port));
+        }
+        joined.append(url.getPath());
+        url.getQuery().ifPresent(query -> joined.append('?').append(query));
+        url.getFragment().ifPresent(fragment -> joined.append('#').append(fragment));
+        return joined.toString();
+    }
+
+    @Test
+    public void testNormalizesEachComponent() {
+        final NormalizedUrl url = UrlNormalizer.semanticPreservingNormalizer()
+                .parse("HTTP://User@Example.COM:80/bar/../%7Efoo%2a?Q=%7e#Frag%2a");
+        assertThat(url.getScheme(), is("http"));
+        assertThat(url.getUserInfo(), is(Optional.of("User")));
+        assertThat(url.getHost(), is(Optional.of("example.com")));
+        assertThat(url.getPort(), is(OptionalInt.empty()));
+        assertThat(url.getPath(), is("/~foo%2A"));
+        assertThat(url.getQuery(), is(Optional.of("Q=~")));
+        assertThat(url.getFragment(), is(Optional.of("Frag%2A")));
+        assertThat(url.toString(), is("http://User@example.com/~foo%2A?Q=~#Frag%2A"));
+    }
+
+    @Test
+    public void testComponentsMakeUpTheNormalizedUrl() {
+        final UrlNormalizer lazy = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REMOVE_FRAGMENT, Normalization.CANONICALIZE_HOST)
+                .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+                .build();
+        final UrlNormalizer eager = lazy.withCache(10);
+        for (String url : URLS) {
+            assertThat(url, join(lazy.parse(url)), is(lazy.apply(url)));
+            assertThat(url, lazy.parse(url).toString(), is(lazy.apply(url)));
+            assertThat(url, join(eager.parse(url)), is(lazy.apply(url)));
+        }
+        assertThat(lazy.parse("http://example.com/?utm_source=x#top").getQuery(), is(Optional.empty()));
+        assertThat(lazy.parse("http://example.com/?utm_source=x#top").getFragment(), is(Optional.empty()));
+    }
+
+    @Test
+    public void testRemovesWhitespaceLeftAtTheEndByRemovedComponents() {
+        final UrlNormalizer normalizer = UrlNormalizer.builder()
+                .with(Normalization.REMOVE_FRAGMENT)
+                .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+                .build();
+        NormalizedUrl url = normalizer.parse("http://example.com/a #f");
+        assertThat(url.getPath(), is("/a"));
+        assertThat(url.toString(), is("http://example.com/a"));
+        url = normalizer.parse("http://example.com/a ?utm_source=x#f");
+        assertThat(url.getPath(), is("/a"));
+        assertThat(url.getQuery(), is(Optional.empty()));
+        assertThat(url.toString(), is("http://example.com/a"));
+        url = normalizer.parse("http://example.com/a ?q #f");
+        assertThat(url.getPath(), is("/a "));
+        assertThat(url.getQuery(), is(Optional.of("q")));
+        assertThat(url.toString(), is("http://example.com/a ?q"));
+
+        url = UrlNormalizer.semanticPreservingNormalizer().parse("http://example.com/a #f");
+        assertThat(url.getPath(), is("/a "));
+        assertThat(url.toString(), is("http://example.com/a #f"));
+    }
+
+    @Test
+    public void testOnlyNormalizesTheComponentsAskedFor() {
+        final NormalizedUrl url = UrlNormalizer.semanticPreservingNormalizer().parse("http://Example.com/?q=%zz");
+        assertThat(url.getHost(), is(Optional.of("example.com")));
+        try {
+            url.getQuery();
+            throw new AssertionError("The query should not be normalizable");
+        } catch (IllegalArgumentException expected) {
+            //as expected
+        }
+    }
+
+    @Test
+    public void testEqualsTheViewsOfEquivalentUrls() {
+        final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+        assertThat(normalizer.parse("HTTP://Example.com:80"), is(normalizer.parse("http://example.com/")));
+        assertThat(normalizer.parse("http://example.com/a"), is(not(normalizer.parse("http://example.com/b"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUrlsWithoutScheme() {
+        UrlNormalizer.semanticPreservingNormalizer().parse("//example.com/");
+    }
+}
@@ -0,0 +1,53 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SchemeRegistryTest {
+    private static int defaultPort(SchemeRegistry registry, String scheme) {
+        final char[] chars = (" " + scheme + "://").toCharArray();
+        return registry.defaultPort(chars, 1, 1 + scheme.length());
+    }
+
+    @Test
+    public void testLooksUpSchemesRegardlessOfCase() {
+        assertThat(defaultPort(SchemeRegistry.DEFAULT, "http"), is(80));
+        assertThat(defaultPort(SchemeRegistry.DEFAULT, "HTTPS"), is(443));
+        assertThat(defaultPort(SchemeRegistry.DEFAULT, "Ws"), is(80));
+        assertThat(defaultPort(SchemeRegistry.DEFAULT, "wss"), is(443));
+        assertThat(defaultPort(SchemeRegistry.DEFAULT, "ftp"), is(21));
+        for (String scheme : new String[]{"", "h", "htt", "httpx", "wsss", "ftps", "file", "mailto"}) {
+            assertThat(scheme, defaultPort(SchemeRegistry.DEFAULT, scheme), is(UrlComponents.ABSENT));
+        }
+    }
+
+    @Test
+    public void testFindsSchemesThatHashAlike() {
+        //Both have the String hash code 3112.
+        final Map<String, Integer> defaultPorts = new LinkedHashMap<>();
+        defaultPorts.put("c+", 1);
+        defaultPorts.put("ai", 2);
+        final SchemeRegistry registry = new SchemeRegistry(defaultPorts);
+        assertThat(defaultPort(registry, "c+"), is(1));
+        assertThat(defaultPort(registry, "AI"), is(2));
+        assertThat(defaultPort(registry, "bJ"), is(UrlComponents.ABSENT));
+    }
+
+    @Test
+    public void testFindsEveryOneOfManySchemes() {
+        final Map<String, Integer> defaultPorts = new LinkedHashMap<>();
+        for (int i = 0; i < 500; i++) {
+            defaultPorts.put("scheme" + i, i);
+        }
+        final SchemeRegistry registry = new SchemeRegistry(defaultPorts);
+        for (int i = 0; i < 500; i++) {
+            assertThat(defaultPort(registry, "scheme" + i), is(i));
+            assertThat(defaultPort(registry, "other" + i), is(UrlComponents.ABSENT));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package net.nebupookins.normalizeurl;
+
+import net.nebupookins.normalizeurl.UrlListNormalizer.MalformedUrlPolicy;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class UrlListNormalizerTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final UrlNormalizer NORMALIZER = UrlNormalizer.semanticPreservingNormalizer();
+
+    /**
+     * @return enough lines to span several chunks, with a malformed one every 1000 lines.
+     */
+    private static List<String> lines() {
+        final List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            lines.add(i % 1000 == 999 ? "malformed " + i : "HTTP://Example.COM:80/" + i + "/../%7e" + i);
+        }
+        return lines;
+    }
+
+    private static byte[] join(List<String> lines) {
+        final StringBuilder joined = new StringBuilder();
+        for (String line : lines) {
+            joined.append(line).append('\n');
+        }
+        return joined.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> expected(List<String> lines, MalformedUrlPolicy policy) {
+        final List<String> expected = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.startsWith("malformed")) {
+                expected.add(NORMALIZER.apply(line));
+            } else if (policy == MalformedUrlPolicy.PASS_THROUGH) {
+                expected.add(line);
+            }
+        }
+        return expected;
+    }
+
+    private static List<String> split(byte[] output) {
+        final List<String> lines = new ArrayList<>();
+        for (String line : new String(output, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    public void testPreservesOrderAndAppliesPolicy() throws IOException {
+        final List<String> lines = lines();
+        for (MalformedUrlPolicy policy : new MalformedUrlPolicy[]{
+                MalformedUrlPolicy.SKIP, MalformedUrlPolicy.PASS_THROUGH, MalformedUrlPolicy.REJECT}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final ByteArrayOutputStream rejects = new ByteArrayOutputStream();
+            final UrlListNormalizer.Summary summary = new UrlListNormalizer(NORMALIZER, policy, 4)
+                    .normalize(new ByteArrayInputStream(join(lines)), out, rejects);
+            assertThat(summary.getLineCount(), is(50_000L));
+            assertThat(summary.getMalformedCount(), is(50L));
+            assertThat(split(out.toByteArray()), is(expected(lines, policy)));
+            assertThat(split(rejects.toByteArray()).size(), is(policy == MalformedUrlPolicy.REJECT ? 50 : 0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFailPolicyStopsOnFirstMalformedLine() throws IOException {
+        new UrlListNormalizer(NORMALIZER, MalformedUrlPolicy.FAIL, 2)
+                .normalize(new ByteArrayInputStream(join(lines())), new ByteArrayOutputStream(), null);
+    }
+
+    @Test
+    public void testReadsAndWritesGzippedFiles() throws IOException {
+        final List<String> lines = lines();
+        final Path input = temporaryFolder.newFile("input").toPath();
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(input))) {
+            out.write(join(lines));
+        }
+        final Path output = temporaryFolder.getRoot().toPath().resolve("output.gz");
+        new UrlListNormalizer(NORMALIZER, MalformedUrlPolicy.SKIP, 3).normalize(input, output, null);
+        final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(output))) {
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                decompressed.write(buffer, 0, read);
+            }
+        }
+        assertThat(split(decompressed.toByteArray()), is(expected(lines, MalformedUrlPolicy.SKIP)));
+    }
+
+    @Test
+    public void testOnlyCreatesRejectsFileWhenRejecting() throws IOException {
+        final Path input = temporaryFolder.newFile("input").toPath();
+        Files.write(input, join(lines()));
+        final Path rejects = temporaryFolder.getRoot().toPath().resolve("rejects");
+        new UrlListNormalizer(NORMALIZER, MalformedUrlPolicy.SKIP, 2)
+                .normalize(input, temporaryFolder.getRoot().toPath().resolve("output"), rejects);
+        assertThat(Files.exists(rejects), is(false));
+        new UrlListNormalizer(NORMALIZER, MalformedUrlPolicy.REJECT, 2)
+                .normalize(input, temporaryFolder.getRoot().toPath().resolve("output"), rejects);
+        assertTrue(Files.size(rejects) > 0);
+    }
+
+    @Test
+    public void testParsesPolicyRegardlessOfLocale() {
+        final Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertThat(MalformedUrlPolicy.fromOption("skip"), is(MalformedUrlPolicy.SKIP));
+            assertThat(MalformedUrlPolicy.fromOption("pass-through"), is(MalformedUrlPolicy.PASS_THROUGH));
+            assertThat(MalformedUrlPolicy.fromOption("fail"), is(MalformedUrlPolicy.FAIL));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class UrlNormalizerBuilderTest {
+    @Test
+    public void testSemanticPreservingSelectionMatchesSemanticPreservingNormalizer() {
+        final UrlNormalizer built = UrlNormalizer.builder().semanticPreserving().build();
+        final UrlNormalizer expected = UrlNormalizer.semanticPreservingNormalizer();
+        for (String url : Arrays.asList(
+                "HTTP://Example.COM:80/bar/../%7Efoo%2a", "http://example.com", "http://example.com:81/?%7e#%2a")) {
+            assertThat(built.apply(url), is(expected.apply(url)));
+        }
+    }
+
+    @Test
+    public void testEmptySelectionOnlySplitsAndReassembles() {
+        final UrlNormalizer underTest = UrlNormalizer.builder().build();
+        assertThat(underTest.apply("HTTP://Example.COM:80/./%7e%2a?q#f"), is("HTTP://Example.COM:80/./%7e%2a?q#f"));
+    }
+
+    @Test
+    public void testSelectsPercentEncodingNormalizationsIndependently() {
+        assertThat(UrlNormalizer.builder().with(Normalization.UPPERCASE_PERCENT_ENCODED_TRIPLETS).build()
+                .apply("http://example.com/%7e%2a"), is("http://example.com/%7E%2A"));
+        assertThat(UrlNormalizer.builder().with(Normalization.DECODE_UNRESERVED_CHARACTERS).build()
+                .apply("http://example.com/%7e%2a"), is("http://example.com/~%2a"));
+    }
+
+    @Test
+    public void testRemovesFragment() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REMOVE_FRAGMENT)
+                .build();
+        assertThat(underTest.apply("http://example.com/a?q#top"), is("http://example.com/a?q"));
+        assertThat(underTest.equivalent("http://example.com/a#top", "http://example.com/a#bottom"), is(true));
+    }
+
+    @Test
+    public void testRemovesTrailingSlash() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .with(Normalization.REMOVE_TRAILING_SLASH, Normalization.NORMALIZE_EMPTY_PATH)
+                .build();
+        assertThat(underTest.apply("http://example.com/a/"), is("http://example.com/a"));
+        assertThat(underTest.apply("http://example.com/a//"), is("http://example.com/a"));
+        assertThat(underTest.apply("http://example.com//"), is("http://example.com/"));
+        assertThat(underTest.apply("http://example.com/"), is("http://example.com/"));
+        assertThat(underTest.apply("http://example.com"), is("http://example.com/"));
+    }
+
+    @Test
+    public void testDoesNotLeaveTrailingWhitespace() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .with(Normalization.REMOVE_FRAGMENT)
+                .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/a #f"), is("http://example.com/a"));
+        assertThat(underTest.apply("http://example.com/a ?utm_source=x"), is("http://example.com/a"));
+    }
+
+    @Test
+    public void testCanonicalizesHost() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.CANONICALIZE_HOST)
+                .build();
+        assertThat(underTest.apply("HTTP://B\u00FCcher.Example.:80/"), is("http://xn--bcher-kva.example/"));
+        assertThat(underTest.apply("http://user@0x7f.1:8080/x"), is("http://user@127.0.0.1:8080/x"));
+        assertThat(underTest.apply("http://[2001:DB8:0:0:0:0:0:1]/"), is("http://[2001:db8::1]/"));
+        assertThat(underTest.apply("http://www.example.com/"), is("http://www.example.com/"));
+        assertThat(underTest.equivalent("http://EXAMPLE.com./a", "http://example.com/a"), is(true));
+        assertThat(underTest.apply("http://a%2fB/"), is("http://a%2Fb/"));
+        assertThat(UrlNormalizer.semanticPreservingNormalizer().apply("http://example.com./"),
+                is("http://example.com./"));
+    }
+
+    @Test
+    public void testSortsQueryParametersStably() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.SORT_QUERY_PARAMETERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/?b=2&a=1&c&a=0&ab=3"),
+                is("http://example.com/?a=1&a=0&ab=3&b=2&c"));
+        assertThat(underTest.equivalent("http://example.com/?b=2&a=1", "http://example.com/?a=1&b=2"), is(true));
+    }
+
+    @Test
+    public void testRemovesQueryParameters() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/?id=1&utm_source=x&utm%5Fmedium=y&fbclid=z"),
+                is("http://example.com/?id=1"));
+        assertThat(underTest.apply("http://example.com/?utm_source=x#f"), is("http://example.com/#f"));
+        assertThat(underTest.apply("http://example.com/?"), is("http://example.com/"));
+    }
+
+    @Test
+    public void testRemovesQueryParametersByPrefix() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .removeQueryParameters(Arrays.asList("utm_*", "ref"))
+                .build();
+        assertThat(underTest.apply("http://example.com/?utm_source=x&utm=1&utm_=2&ref=3&referrer=4"),
+                is("http://example.com/?utm=1&referrer=4"));
+    }
+
+    @Test
+    public void testRemovesDuplicateQueryParameters() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REMOVE_DUPLICATE_QUERY_PARAMETERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/?a=1&b&a=1&a=2&b&a=%31"),
+                is("http://example.com/?a=1&b&a=2"));
+    }
+
+    @Test
+    public void testReencodesRewrittenQueriesCanonically() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.SORT_QUERY_PARAMETERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/?q=\u00e9 \ud83d\ude00&p=a/b?c:d@e"),
+                is("http://example.com/?p=a/b?c:d@e&q=%C3%A9%20%F0%9F%98%80"));
+        //Without the percent-encoding normalizations, invalid triplets aren't rejected, but their '%' is encoded.
+        assertThat(UrlNormalizer.builder().with(Normalization.SORT_QUERY_PARAMETERS).build()
+                .apply("http://example.com/?q=%zz%2a%"), is("http://example.com/?q=%25zz%2a%25"));
+        assertThat(underTest.equivalent("http://example.com/?q=\u00e9", "http://example.com/?q=%c3%a9"), is(true));
+    }
+
+    @Test
+    public void testRewritesQueriesWithManyParameters() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .with(Normalization.SORT_QUERY_PARAMETERS, Normalization.REMOVE_DUPLICATE_QUERY_PARAMETERS)
+                .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+                .build();
+        final Random random = new Random(42);
+        final List<String> parameters = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            parameters.add("p" + random.nextInt(300) + "=" + random.nextInt(3));
+            if (i % 10 == 0) {
+                parameters.add("utm_source=" + i);
+            }
+        }
+        final List<String> expected = new ArrayList<>(new LinkedHashSet<>(parameters));
+        expected.removeIf(parameter -> parameter.startsWith("utm_source="));
+        expected.sort(Comparator.comparing(parameter -> parameter.substring(0, parameter.indexOf('='))));
+        assertThat(underTest.apply("http://example.com/?" + String.join("&", parameters)),
+                is("http://example.com/?" + String.join("&", expected)));
+    }
+
+    @Test
+    public void testRepairsInvalidCharacters() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .with(Normalization.REPAIR_INVALID_CHARACTERS)
+                .build();
+        assertThat(underTest.apply("http://example.com/a b/100%/%zz?q=\"x\"#%4"),
+                is("http://example.com/a%20b/100%25/%25zz?q=%22x%22#%254"));
+        assertThat(underTest.apply("http://example.com/caf\u00E9/\uD83D\uDE00"),
+                is("http://example.com/caf%C3%A9/%F0%9F%98%80"));
+        final String repaired = underTest.apply("http://example.com/{a}|%g");
+        assertThat(repaired, is("http://example.com/%7Ba%7D%7C%25g"));
+        assertThat(underTest.apply(repaired), is(repaired));
+    }
+
+    @Test
+    public void testRegistersDefaultPorts() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .defaultPort("Gopher", 70)
+                .defaultPort("http", 8080)
+                .build();
+        assertThat(underTest.apply("gopher://example.com:70/"), is("gopher://example.com/"));
+        assertThat(underTest.apply("http://example.com:8080/"), is("http://example.com/"));
+        assertThat(underTest.apply("http://example.com:80/"), is("http://example.com:80/"));
+        assertThat(underTest.apply("https://example.com:443/"), is("https://example.com/"));
+    }
+
+    @Test(timeout = 10_000)
+    public void testRegistersDefaultPortsOfSchemesThatHashAlike() {
+        final UrlNormalizer underTest = UrlNormalizer.builder()
+                .semanticPreserving()
+                .defaultPort("c+", 1)
+                .defaultPort("ai", 2)
+                .build();
+        assertThat(underTest.apply("c+://example.com:1/"), is("c+://example.com/"));
+        assertThat(underTest.apply("ai://example.com:2/"), is("ai://example.com/"));
+        assertThat(underTest.apply("ai://example.com:1/"), is("ai://example.com:1/"));
+    }
+
+    @Test
+    public void testBuiltNormalizerIsUnaffectedByLaterChangesToBuilder() {
+        final UrlNormalizerBuilder builder = UrlNormalizer.builder().semanticPreserving();
+        final UrlNormalizer underTest = builder.build();
+        builder.with(Normalization.REMOVE_FRAGMENT);
+        assertThat(underTest.apply("http://example.com/#f"), is("http://example.com/#f"));
+    }
+}
@@ -0,0 +1,293 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks properties that must hold for every url, on urls generated to hit the corner cases of the normalization
+ * engine: deep and unbalanced dot segments, percent-encoded triplets in mixed case, huge queries, non-ASCII chars and
+ * malformed components. The generator is seeded, so failures are reproducible; the failing url is in the message.
+ *
+ * <p>Pathological inputs are also checked against time and allocation budgets, which are generous enough to hold on a
+ * busy machine, but not for work that grows faster than the input.</p>
+ */
+public class UrlNormalizerPropertyTest {
+    private static final int URL_COUNT = 20_000;
+    private static final String[] SCHEMES = {"http", "HTTP", "https", "HtTpS", "ws", "wss", "ftp", "foo+bar", "x"};
+    private static final String[] HOSTS = {
+            "example.com", "Example.COM", "EX%41MPLE.com", "127.0.0.1", "[::1]", "[FE80::1]", "b\u00FCcher.example",
+            "", "a.b.c.d.e.f.example", "xn--bcher-kva.example", "B%C3%BCcher.example", "caf%c3%a9.Example",
+            "a..", "b\u00FCcher.example.."};
+    private static final String[] PORTS = {"80", "443", "21", "8080", "", "0080", "0", "65535"};
+    private static final String[] SEGMENTS = {
+            "a", "B", "..", ".", "", "%7e", "%7E", "%2f", "%2F", "%2e", "%2E%2e", "%41", "%c3%A9", "\u00E9",
+            "\uD83D\uDE00", "~", "a%20b", "%25", "!$&'()*+,;=:@", "..a", ".a."};
+    private static final String[] QUERY_PARTS = {"a", "B", "=", "&", "%7e", "%3D", "%26", "\u00E9", "+", "?", "/", ""};
+
+    /**
+     * Builds an input from a number of repetitions of something expensive to normalize.
+     */
+    private interface PathologicalUrl {
+        String build(int repetitions);
+    }
+
+    private static final PathologicalUrl[] PATHOLOGICAL_URLS = {
+            n -> "http://example.com/" + repeat("a/", n) + repeat("../", n),
+            n -> "http://example.com/" + repeat("../", n) + repeat("./", n) + "a",
+            n -> "http://example.com/" + repeat("%7e%2a%c3%A9", n),
+            n -> "http://example.com/?" + repeat("b=1&a=2&utm_source=x&", n),
+            n -> "http://example.com/" + repeat("\u00E9 %", n),
+    };
+    private static final int PATHOLOGICAL_SIZE = 2_000;
+
+    private static final UrlNormalizer SEMANTIC_PRESERVING = UrlNormalizer.semanticPreservingNormalizer();
+    private static final UrlNormalizer AGGRESSIVE = UrlNormalizer.builder()
+            .with(EnumSet.complementOf(EnumSet.of(Normalization.REPAIR_INVALID_CHARACTERS))
+                    .toArray(new Normalization[0]))
+            .removeQueryParameters(UrlNormalizerBuilder.TRACKING_PARAMETERS)
+            .build();
+    private static final UrlNormalizer REPAIRING = UrlNormalizer.builder()
+            .semanticPreserving()
+            .with(Normalization.REPAIR_INVALID_CHARACTERS)
+            .build();
+
+    /**
+     * Generates an adversarial url; mostly well formed, sometimes not.
+     */
+    private static String randomUrl(Random random) {
+        final StringBuilder url = new StringBuilder();
+        if (random.nextInt(50) == 0) {
+            url.append(' ');
+        }
+        url.append(pick(random, SCHEMES)).append(':');
+        if (random.nextInt(10) != 0) {
+            url.append("//");
+            if (random.nextInt(5) == 0) {
+                url.append(random.nextBoolean() ? "User:Pass%7e" : "u%2a").append('@');
+            }
+            url.append(pick(random, HOSTS));
+            if (random.nextInt(3) == 0) {
+                url.append(':').append(pick(random, PORTS));
+            }
+        }
+        final int segmentCount = random.nextInt(8) == 0 ? random.nextInt(200) : random.nextInt(8);
+        for (int i = 0; i < segmentCount; i++) {
+            url.append('/').append(pick(random, SEGMENTS));
+        }
+        if (random.nextInt(3) == 0) {
+            url.append('?');
+            final int partCount = random.nextInt(10) == 0 ? random.nextInt(500) : random.nextInt(12);
+            for (int i = 0; i < partCount; i++) {
+                url.append(random.nextInt(20) == 0 ? "utm_source" : pick(random, QUERY_PARTS));
+            }
+        }
+        if (random.nextInt(4) == 0) {
+            url.append('#').append(pick(random, SEGMENTS));
+        }
+        if (random.nextInt(50) == 0) {
+            //Garbage that may or may not break the url, but doesn't split surrogate pairs, which UTF-8 can't encode.
+            int offset = random.nextInt(url.length() + 1);
+            if (offset > 0 && Character.isHighSurrogate(url.charAt(offset - 1))) {
+                offset++;
+            }
+            url.insert(offset, pick(random, new String[]{"%", "%z", " ", "[", "]", ":"}));
+        }
+        return url.toString();
+    }
+
+    private static String repeat(String s, int count) {
+        final StringBuilder repeated = new StringBuilder(s.length() * count);
+        for (int i = 0; i < count; i++) {
+            repeated.append(s);
+        }
+        return repeated.toString();
+    }
+
+    /**
+     * @return the shortest of several timings of normalizing the url, after warming up.
+     */
+    private static long fastestNanos(UrlNormalizer normalizer, String url) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = 0; i < 20; i++) {
+            final long start = System.nanoTime();
+            normalizer.apply(url);
+            fastest = Math.min(fastest, System.nanoTime() - start);
+        }
+        return fastest;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(counter.isThreadAllocatedMemorySupported() && counter.isThreadAllocatedMemoryEnabled());
+        return counter;
+    }
+
+    private static String pick(Random random, String[] choices) {
+        return choices[random.nextInt(choices.length)];
+    }
+
+    /**
+     * @return the normalized url, or null if the normalizer rejects it.
+     */
+    private static String applyOrNull(UrlNormalizer normalizer, String url) {
+        try {
+            return normalizer.apply(url);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String applyStagedOrNull(String url) {
+        try {
+            return SemanticPreservingNormalizations.applyStaged(url);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return what the engine should make of the url, given what the staged pipeline makes of it: the same, except for
+     * the differences recorded in {@link NormalizationEngineTest}, or null if the staged pipeline rejects the url.
+     */
+    private static String expectedFromStagedPipeline(String url) {
+        final String staged = applyStagedOrNull(url);
+        if (staged == null) {
+            return null;
+        }
+        final char[] input = url.toCharArray();
+        final UrlComponents original = new UrlComponents();
+        original.parse(input, 0, input.length);
+        final char[] output = staged.toCharArray();
+        final UrlComponents normalized = new UrlComponents();
+        normalized.parse(output, 0, output.length);
+        if (!original.hasAuthority()) {
+            //A path starting with "//" keeps a "/." in front of it, rather than turning into an authority.
+            return normalized.hasAuthority()
+                    ? staged.substring(0, normalized.schemeEnd + 1) + "/." + staged.substring(normalized.schemeEnd + 1)
+                    : staged;
+        }
+        //Host chars decoded from triplets are lowercased like the rest of the host.
+        final String host = staged.substring(normalized.hostStart, normalized.hostEnd);
+        return staged.substring(0, normalized.hostStart) + HostCanonicalizer.toLowerCaseOutsideTriplets(host)
+                + staged.substring(normalized.hostEnd);
+    }
+
+    @Test
+    public void testAgreesWithStagedPipeline() {
+        final Random random = new Random(1);
+        for (int i = 0; i < URL_COUNT; i++) {
+            final String url = randomUrl(random);
+            assertThat(url, applyOrNull(SEMANTIC_PRESERVING, url), is(expectedFromStagedPipeline(url)));
+        }
+    }
+
+    @Test
+    public void testIsIdempotent() {
+        final Random random = new Random(2);
+        for (int i = 0; i < URL_COUNT; i++) {
+            final String url = randomUrl(random);
+            for (UrlNormalizer normalizer : new UrlNormalizer[]{SEMANTIC_PRESERVING, AGGRESSIVE, REPAIRING}) {
+                final String normalized = applyOrNull(normalizer, url);
+                if (normalized != null) {
+                    assertThat(url, normalizer.apply(normalized), is(normalized));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEntryPointsAgree() {
+        final Random random = new Random(3);
+        final UrlNormalizerSession session = AGGRESSIVE.newSession();
+        final StringBuilder appended = new StringBuilder();
+        final byte[] dest = new byte[64 * 1024];
+        for (int i = 0; i < URL_COUNT; i++) {
+            final String url = randomUrl(random);
+            final String normalized = applyOrNull(AGGRESSIVE, url);
+            final NormalizationResult result = AGGRESSIVE.tryApply(url);
+            assertThat(url, result.isSuccess(), is(normalized != null));
+            appended.setLength(0);
+            assertThat(url, session.tryAppendTo(url, appended) == null, is(normalized != null));
+            if (normalized == null) {
+                continue;
+            }
+            assertThat(url, result.get(), is(normalized));
+            assertThat(url, appended.toString(), is(normalized));
+            assertThat(url, AGGRESSIVE.parse(url).toString(), is(normalized));
+            assertThat(url, AGGRESSIVE.equivalent(url, normalized), is(true));
+            assertThat(url, AGGRESSIVE.fingerprint64(url), is(AGGRESSIVE.fingerprint64(normalized)));
+            final byte[] src = url.getBytes(StandardCharsets.UTF_8);
+            final int written = AGGRESSIVE.apply(src, 0, src.length, dest, 0);
+            assertThat(url, new String(dest, 0, written, StandardCharsets.UTF_8), is(normalized));
+        }
+    }
+
+    @Test
+    public void testRunsInLinearTime() {
+        for (PathologicalUrl pathologicalUrl : PATHOLOGICAL_URLS) {
+            final String small = pathologicalUrl.build(PATHOLOGICAL_SIZE);
+            final String large = pathologicalUrl.build(PATHOLOGICAL_SIZE * 16);
+            final long smallNanos = fastestNanos(REPAIRING, small);
+            final long largeNanos = fastestNanos(REPAIRING, large);
+            //16 times the input takes about 16 times as long; quadratic work would take 256 times as long.
+            assertTrue(large.substring(0, 40) + ": " + smallNanos + "ns, then " + largeNanos + "ns",
+                    largeNanos < smallNanos * 64 + 5_000_000);
+            assertTrue(large.substring(0, 40) + ": " + largeNanos + "ns", largeNanos < 1_000_000_000L);
+        }
+    }
+
+    @Test
+    public void testStaysWithinAllocationBudget() {
+        final com.sun.management.ThreadMXBean counter = allocationCounter();
+        final long threadId = Thread.currentThread().getId();
+        for (PathologicalUrl pathologicalUrl : PATHOLOGICAL_URLS) {
+            final String url = pathologicalUrl.build(PATHOLOGICAL_SIZE * 16);
+            //Let the scratch buffers grow to fit.
+            REPAIRING.apply(url);
+            final long before = counter.getThreadAllocatedBytes(threadId);
+            REPAIRING.apply(url);
+            final long allocated = counter.getThreadAllocatedBytes(threadId) - before;
+            //Mostly the normalized url itself, which is up to 3 times as long when chars are percent-encoded.
+            assertTrue(url.substring(0, 40) + ": " + allocated + " bytes", allocated < url.length() * 16L + 64 * 1024);
+        }
+    }
+
+    @Test
+    public void testSessionsDoNotAllocatePerUrl() {
+        final com.sun.management.ThreadMXBean counter = allocationCounter();
+        final long threadId = Thread.currentThread().getId();
+        final Random random = new Random(4);
+        final String[] urls = new String[1_000];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = randomUrl(random);
+        }
+        final UrlNormalizerSession session = SEMANTIC_PRESERVING.newSession();
+        final StringBuilder dest = new StringBuilder(64 * 1024);
+        for (String url : urls) {
+            dest.setLength(0);
+            session.tryAppendTo(url, dest);
+        }
+        final long before = counter.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10; i++) {
+            for (String url : urls) {
+                dest.setLength(0);
+                session.tryAppendTo(url, dest);
+            }
+        }
+        final long allocated = counter.getThreadAllocatedBytes(threadId) - before;
+        //This normalizer doesn't canonicalize hosts, so the only allocations are the odd few by the JVM itself.
+        assertTrue(allocated + " bytes for " + urls.length * 10 + " urls", allocated < urls.length * 10);
+    }
+}
@@ -0,0 +1,95 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.CharBuffer;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class UrlNormalizerSessionTest {
+    private static final String[] URLS = {
+            "HTTP://Example.COM:80/bar/../%7Efoo%2a",
+            "http://example.com/",
+            "https://user@EXAMPLE.com:8443/a/./b/../c?b=2&a=1#frag",
+            "http://example.com" + "/very/long/path".replace("/", "/%7e") + "?q=%c3%a9",
+            "http://[::1]:80",
+    };
+
+    @Test
+    public void testAppendsSameResultsAsApply() {
+        final UrlNormalizer normalizer = UrlNormalizer.semanticPreservingNormalizer();
+        final UrlNormalizerSession underTest = normalizer.newSession();
+        final StringBuilder dest = new StringBuilder("urls:");
+        for (String url : URLS) {
+            final int start = dest.length();
+            final int appended = underTest.appendTo(url, dest);
+            assertThat(dest.substring(start), is(normalizer.apply(url)));
+            assertThat(appended, is(dest.length() - start));
+        }
+        assertThat(dest.toString(), startsWith("urls:"));
+    }
+
+    @Test
+    public void testReadsUrlsFromAnyCharSequence() {
+        final UrlNormalizerSession underTest = UrlNormalizer.semanticPreservingNormalizer().newSession();
+        final StringBuilder dest = new StringBuilder();
+        underTest.appendTo(new StringBuilder("HTTP://Example.COM/%7e"), dest);
+        dest.append(' ');
+        underTest.appendTo(CharBuffer.wrap("xHTTP://Example.COM/%7ex", 1, 23), dest);
+        assertThat(dest.toString(), is("http://example.com/~ http://example.com/~"));
+    }
+
+    @Test
+    public void testWritesToCharBuffer() {
+        final UrlNormalizerSession underTest = UrlNormalizer.semanticPreservingNormalizer().newSession();
+        final CharBuffer dest = CharBuffer.allocate(25);
+        assertThat(underTest.appendTo("HTTP://Example.COM:80/%7e", dest), is(20));
+        assertThat(dest.position(), is(20));
+        try {
+            underTest.appendTo("http://example.com/", dest);
+            fail();
+        } catch (BufferOverflowException e) {
+            assertThat(dest.position(), is(20));
+        }
+        dest.flip();
+        assertThat(dest.toString(), is("http://example.com/~"));
+    }
+
+    @Test
+    public void testThrowsWithoutAppending() {
+        final UrlNormalizerSession underTest = UrlNormalizer.semanticPreservingNormalizer().newSession();
+        final StringBuilder dest = new StringBuilder();
+        try {
+            underTest.appendTo("http://example.com/%2", dest);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertThat(dest.length(), is(0));
+        }
+    }
+
+    @Test
+    public void testReportsErrorsWithoutAppending() {
+        final UrlNormalizerSession underTest = UrlNormalizer.semanticPreservingNormalizer().newSession();
+        final StringBuilder dest = new StringBuilder();
+        assertThat(underTest.tryAppendTo("not a url", dest), is(NormalizationError.NO_SCHEME));
+        assertThat(underTest.getErrorOffset(), is(3));
+        assertThat(underTest.tryAppendTo("http://example.com/%zz", dest),
+                is(NormalizationError.INVALID_PERCENT_ENCODED_TRIPLET));
+        assertThat(dest.length(), is(0));
+        assertThat(underTest.tryAppendTo("HTTP://Example.COM", dest), is(nullValue()));
+        assertThat(dest.toString(), is("http://example.com/"));
+    }
+
+    @Test
+    public void testFallsBackToApplyForOtherNormalizers() {
+        final UrlNormalizer normalizer = url -> url.toUpperCase();
+        final UrlNormalizerSession underTest = normalizer.newSession();
+        final StringBuilder dest = new StringBuilder();
+        underTest.appendTo("http://example.com/", dest);
+        assertThat(underTest.tryAppendTo("/a", dest), is(nullValue()));
+        assertThat(dest.toString(), is("HTTP://EXAMPLE.COM//A"));
+    }
+}
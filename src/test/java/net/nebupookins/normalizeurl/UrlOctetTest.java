@@ -0,0 +1,48 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class UrlOctetTest {
+    private static final String UNRESERVED =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._~";
+
+    @Test
+    public void testOnlyUnreservedCharactersCanBeLiteral() {
+        for (char c = 0; c < 0x100; c++) {
+            assertThat(Character.toString(c), UrlOctet.valueOf(c).needsEncoding(), is(UNRESERVED.indexOf(c) < 0));
+        }
+    }
+
+    @Test
+    public void testEncodesWithUppercaseHexDigits() {
+        assertThat(UrlOctet.valueOf((char) 0x00).asEncoded(), is("%00"));
+        assertThat(UrlOctet.valueOf('*').asEncoded(), is("%2A"));
+        assertThat(UrlOctet.valueOf((char) 0xFF).asEncoded(), is("%FF"));
+        assertThat(UrlOctet.valueOf('a').toString(), is("a"));
+        assertThat(UrlOctet.valueOf(' ').toString(), is("%20"));
+    }
+
+    @Test
+    public void testHexValues() {
+        for (char c = 0; c < 0x100; c++) {
+            assertThat(UrlOctet.hexValue(c), is(Character.digit(c, 16)));
+            assertThat(UrlOctet.hexValue(UrlOctet.highHexDigit(c)), is(c >> 4));
+            assertThat(UrlOctet.hexValue(UrlOctet.lowHexDigit(c)), is(c & 0xF));
+        }
+        assertThat(UrlOctet.hexValue('\uFF10'), is(-1));
+    }
+
+    @Test
+    public void testValueOfReturnsSharedInstances() {
+        assertThat(UrlOctet.valueOf('a'), is(sameInstance(UrlOctet.valueOf('a'))));
+        assertThat(UrlOctet.valueOf('a'), is(new UrlOctet('a')));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsCharsOutsideOfOctetRange() {
+        UrlOctet.valueOf((char) 0x100);
+    }
+}
@@ -0,0 +1,182 @@
+package net.nebupookins.normalizeurl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class NormalizingPublisherTest {
+    /**
+     * Publishes the urls "http://Example.COM/0", "http://Example.COM/1"... up to count, keeping track of how many
+     * were requested.
+     */
+    private static final class CountingPublisher implements Flow.Publisher<String> {
+        final int count;
+        final AtomicLong requested = new AtomicLong();
+
+        CountingPublisher(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super String> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                private int published;
+                private boolean cancelled;
+
+                @Override
+                public synchronized void request(long n) {
+                    requested.addAndGet(n);
+                    for (long i = 0; i < n && published < count && !cancelled; i++) {
+                        subscriber.onNext(published % 10 == 9 ? "not a url" : "http://Example.COM/" + published);
+                        published++;
+                    }
+                    if (published == count && !cancelled) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public synchronized void cancel() {
+                    cancelled = true;
+                }
+            });
+        }
+    }
+
+    private static final class CollectingSubscriber implements Flow.Subscriber<NormalizationResult> {
+        final List<NormalizationResult> results = new ArrayList<>();
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Flow.Subscription subscription;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void onNext(NormalizationResult result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+
+        synchronized int count() {
+            return results.size();
+        }
+    }
+
+    private static void awaitSubscription(CollectingSubscriber subscriber) throws InterruptedException {
+        while (subscriber.subscription == null) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits, for at most 10 seconds, until the subscriber has received count results.
+     */
+    private static void awaitCount(CollectingSubscriber subscriber, int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (subscriber.count() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(subscriber.count(), is(count));
+    }
+
+    /**
+     * Checks that the subscriber receives nothing beyond count results, giving stray deliveries time to arrive.
+     */
+    private static void assertNothingMoreArrives(CollectingSubscriber subscriber, int count)
+            throws InterruptedException {
+        Thread.sleep(100);
+        assertThat(subscriber.count(), is(count));
+    }
+
+    @Test
+    public void testPublishesResultsInOrder() throws Exception {
+        final CountingPublisher urls = new CountingPublisher(1000);
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        new NormalizingPublisher(UrlNormalizer.semanticPreservingNormalizer().async(), urls).subscribe(subscriber);
+        awaitSubscription(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertThat(subscriber.error, is(nullValue()));
+        assertThat(subscriber.count(), is(1000));
+        for (int i = 0; i < 1000; i++) {
+            final NormalizationResult result = subscriber.results.get(i);
+            if (i % 10 == 9) {
+                assertThat(result.getError(), is(NormalizationError.NO_SCHEME));
+            } else {
+                assertThat(result.get(), is("http://example.com/" + i));
+            }
+        }
+    }
+
+    @Test
+    public void testHonorsDemand() throws Exception {
+        final CountingPublisher urls = new CountingPublisher(1000);
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        final AsyncUrlNormalizer normalizer =
+                new AsyncUrlNormalizer(UrlNormalizer.semanticPreservingNormalizer(), ForkJoinPool.commonPool(), 16);
+        new NormalizingPublisher(normalizer, urls).subscribe(subscriber);
+        awaitSubscription(subscriber);
+        subscriber.subscription.request(5);
+
+        awaitCount(subscriber, 5);
+        assertNothingMoreArrives(subscriber, 5);
+        //Only a batch is fetched ahead of the subscriber.
+        assertTrue(urls.requested.get() <= 5 + 16);
+
+        subscriber.subscription.request(995);
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertThat(subscriber.count(), is(1000));
+    }
+
+    @Test
+    public void testStopsWhenCancelled() throws Exception {
+        final CountingPublisher urls = new CountingPublisher(1000);
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        new NormalizingPublisher(UrlNormalizer.semanticPreservingNormalizer().async(), urls).subscribe(subscriber);
+        awaitSubscription(subscriber);
+        subscriber.subscription.request(10);
+        awaitCount(subscriber, 10);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+
+        assertNothingMoreArrives(subscriber, 10);
+        assertThat(subscriber.completed.getCount(), is(1L));
+    }
+
+    @Test
+    public void testRejectsNonPositiveRequests() throws Exception {
+        final CollectingSubscriber subscriber = new CollectingSubscriber();
+        new NormalizingPublisher(UrlNormalizer.semanticPreservingNormalizer().async(), new CountingPublisher(10))
+                .subscribe(subscriber);
+        awaitSubscription(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.completed.await(10, TimeUnit.SECONDS));
+        assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+    }
+}